@@ -0,0 +1,20 @@
+#!/bin/sh
+# Запуск замеров с профилировщиком выделения памяти и сохранением результатов в results/.
+#
+#   ./run.sh                         все замеры, результат в results/<дата-время>.json
+#   ./run.sh baseline                то же в results/baseline.json (новая база для сравнения)
+#   ./run.sh new HabitQuery -p habitCount=10000
+#                                    после имени файла - обычные параметры JMH
+#
+# Сравнение с базой:
+#   java -cp target/benchmarks.jar com.example.benchmarks.CompareResults results/baseline.json results/new.json
+#
+# Перед запуском: mvn install в корне проекта, затем mvn package здесь.
+set -e
+cd "$(dirname "$0")"
+
+name=${1:-$(date +%Y%m%d-%H%M%S)}
+[ $# -gt 0 ] && shift
+
+mkdir -p results
+java -jar target/benchmarks.jar -prof gc -rf json -rff "results/$name.json" "$@"
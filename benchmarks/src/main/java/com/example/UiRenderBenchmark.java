@@ -0,0 +1,313 @@
+package com.example;
+
+import com.example.benchmarks.HabitDatasets;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+
+// Замер построения представлений JavaFX без экрана: календарь в трех видах, обновление
+// календаря и окно статистики при разном количестве привычек. Для каждого представления
+// меряются построение узлов, CSS и раскладка, время до первого импульса после показа,
+// отрисовка снимка сцены и количество узлов. Результат пишется в JSON.
+//
+// Лежит в пакете com.example, потому что ячейки календаря и StatisticsWindow.isComputing()
+// доступны только внутри пакета. Запуск (после mvn package):
+//
+//     java -cp target/benchmarks.jar com.example.UiRenderBenchmark [--sizes 1000,10000] [--repeats 5] [--out results/ui.json]
+//
+// Без экрана работает через Monocle: glass.platform=Monocle, monocle.platform=Headless,
+// программная отрисовка prism.order=sw. Свойства выставляются до запуска JavaFX.
+public final class UiRenderBenchmark {
+    private static final int WIDTH = 900;
+    private static final int HEIGHT = 700;
+    private static final long TIMEOUT_SECONDS = 300;
+
+    // Представления календаря: как в HabitTrackerApp.applyCalendarView()
+    private static final Map<String, Function<HabitManager, ListCell<Habit>>> CALENDAR_VIEWS = new LinkedHashMap<>();
+
+    static {
+        CALENDAR_VIEWS.put("calendar-cells", manager -> new HabitCalendarCell(manager, (habit, date) -> { }));
+        CALENDAR_VIEWS.put("calendar-heatmap-30", manager -> new HabitHeatmapCell(manager, (habit, date) -> { }, 30, 20));
+        CALENDAR_VIEWS.put("calendar-heatmap-year", manager -> new HabitHeatmapCell(manager, (habit, date) -> { }, 365, 12));
+    }
+
+    private UiRenderBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {1000, 10000, 100000};
+        int repeats = 5;
+        int warmups = 2;
+        Path out = Paths.get("results", "ui-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--repeats":
+                    repeats = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmups":
+                    warmups = Integer.parseInt(args[++i]);
+                    break;
+                case "--out":
+                    out = Paths.get(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный параметр: " + args[i]);
+            }
+        }
+
+        setDefaultProperty("glass.platform", "Monocle");
+        setDefaultProperty("monocle.platform", "Headless");
+        setDefaultProperty("prism.order", "sw");
+        Platform.startup(() -> { });
+        Platform.setImplicitExit(false);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            for (int size : sizes) {
+                Path directory = HabitDatasets.createDirectory();
+                HabitManager manager = HabitDatasets.manager(directory, HabitDatasets.generate(size, 3, HabitDatasets.SEED),
+                    StorageFormat.BINARY);
+                try {
+                    for (int run = -warmups; run < repeats; run++) {
+                        for (Map.Entry<String, Function<HabitManager, ListCell<Habit>>> view : CALENDAR_VIEWS.entrySet()) {
+                            record(results, run, measureCalendar(view.getKey(), view.getValue(), manager));
+                        }
+                        record(results, run, measureCalendarUpdate(manager));
+                        record(results, run, measureStatisticsWindow(manager));
+                    }
+                } finally {
+                    manager.close();
+                    HabitDatasets.deleteDirectory(directory);
+                }
+            }
+        } finally {
+            Platform.exit();
+        }
+
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(results, writer);
+        }
+        System.out.println("Результаты: " + out.toAbsolutePath());
+    }
+
+    private static void setDefaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+    // Прогревочные прогоны (run < 0) не записываются
+    private static void record(List<Map<String, Object>> results, int run, Map<String, Object> result) {
+        if (run >= 0) {
+            result.put("run", run);
+            results.add(result);
+            System.out.println(result);
+        }
+    }
+
+    // Календарь с нуля: ListView с ячейками выбранного вида в новом окне
+    private static Map<String, Object> measureCalendar(String view, Function<HabitManager, ListCell<Habit>> cellFactory,
+            HabitManager manager) throws Exception {
+        Measurement measurement = new Measurement(view, manager.getTotalHabits());
+        Stage stage = onFx(() -> {
+            long start = System.nanoTime();
+            ObservableList<Habit> habits = FXCollections.observableArrayList(manager.getHabits());
+            ListView<Habit> listView = new ListView<>(habits);
+            listView.setCellFactory(list -> cellFactory.apply(manager));
+            BorderPane root = new BorderPane(listView);
+            Scene scene = new Scene(root, WIDTH, HEIGHT);
+            measurement.buildNanos = System.nanoTime() - start;
+
+            Stage window = new Stage();
+            window.setScene(scene);
+            measurement.layout(root);
+            return window;
+        });
+        measurement.showAndRender(stage);
+        onFx(() -> {
+            stage.hide();
+            return null;
+        });
+        return measurement.toMap();
+    }
+
+    // Обновление показанного календаря, как updateCalendar(): список заменяется целиком
+    private static Map<String, Object> measureCalendarUpdate(HabitManager manager) throws Exception {
+        Measurement measurement = new Measurement("calendar-update", manager.getTotalHabits());
+        ObservableList<Habit> habits = FXCollections.observableArrayList();
+        Stage stage = onFx(() -> {
+            ListView<Habit> listView = new ListView<>(habits);
+            listView.setCellFactory(list -> new HabitCalendarCell(manager, (habit, date) -> { }));
+            Stage window = new Stage();
+            window.setScene(new Scene(new BorderPane(listView), WIDTH, HEIGHT));
+            return window;
+        });
+        Measurement.show(stage);
+
+        onFx(() -> {
+            long start = System.nanoTime();
+            habits.setAll(manager.getHabits());
+            measurement.buildNanos = System.nanoTime() - start;
+            measurement.layout(stage.getScene().getRoot());
+            return null;
+        });
+        measurement.render(stage);
+        onFx(() -> {
+            stage.hide();
+            return null;
+        });
+        return measurement.toMap();
+    }
+
+    // Окно статистики: построение с заглушками, показ и время до заполнения фоновым вычислением
+    private static Map<String, Object> measureStatisticsWindow(HabitManager manager) throws Exception {
+        Measurement measurement = new Measurement("statistics-window", manager.getTotalHabits());
+        StatisticsWindow window = onFx(() -> {
+            long start = System.nanoTime();
+            StatisticsWindow statistics = new StatisticsWindow(null, manager);
+            measurement.buildNanos = System.nanoTime() - start;
+            measurement.layout(statistics.getScene().getRoot());
+            return statistics;
+        });
+        long shown = System.nanoTime();
+        measurement.showAndRender(window);
+
+        // Фоновое вычисление проверяется на каждом импульсе, пока не закончится
+        CompletableFuture<Long> computed = new CompletableFuture<>();
+        Runnable pulseListener = () -> {
+            if (!window.isComputing() && !computed.isDone()) {
+                computed.complete(System.nanoTime());
+            }
+        };
+        onFx(() -> {
+            window.getScene().addPostLayoutPulseListener(pulseListener);
+            Platform.requestNextPulse();
+            return null;
+        });
+        measurement.dataNanos = computed.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) - shown;
+        onFx(() -> {
+            window.getScene().removePostLayoutPulseListener(pulseListener);
+            measurement.nodeCount = SceneNodes.countNodes(window.getScene().getRoot());
+            window.hide();
+            return null;
+        });
+        return measurement.toMap();
+    }
+
+    private interface FxCall<T> {
+        T call() throws Exception;
+    }
+
+    // Выполнить в потоке JavaFX и дождаться результата
+    private static <T> T onFx(FxCall<T> call) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(call.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Значения одного прогона. Поля пишутся в потоке JavaFX, читаются после его ответа.
+    private static final class Measurement {
+        final String view;
+        final int habits;
+        long buildNanos;
+        long layoutNanos;
+        long firstPulseNanos = -1;
+        long renderNanos = -1;
+        long dataNanos = -1;
+        int nodeCount;
+
+        Measurement(String view, int habits) {
+            this.view = view;
+            this.habits = habits;
+        }
+
+        // Первое применение CSS и раскладка, выполненные сразу, а не в импульсе
+        void layout(Parent root) {
+            long start = System.nanoTime();
+            root.applyCss();
+            root.layout();
+            layoutNanos = System.nanoTime() - start;
+            nodeCount = SceneNodes.countNodes(root);
+        }
+
+        static long show(Stage stage) throws Exception {
+            CompletableFuture<Long> pulse = new CompletableFuture<>();
+            long start = onFx(() -> {
+                stage.getScene().addPostLayoutPulseListener(() -> pulse.complete(System.nanoTime()));
+                long shown = System.nanoTime();
+                stage.show();
+                Platform.requestNextPulse();
+                return shown;
+            });
+            return pulse.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) - start;
+        }
+
+        void showAndRender(Stage stage) throws Exception {
+            firstPulseNanos = show(stage);
+            render(stage);
+        }
+
+        // Отрисовка сцены в изображение: без экрана так измеряется стоимость рендеринга
+        void render(Stage stage) throws Exception {
+            onFx(() -> {
+                long start = System.nanoTime();
+                stage.getScene().snapshot(null);
+                renderNanos = System.nanoTime() - start;
+                nodeCount = SceneNodes.countNodes(stage.getScene().getRoot());
+                return null;
+            });
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("view", view);
+            map.put("habits", habits);
+            map.put("buildMs", millis(buildNanos));
+            map.put("layoutMs", millis(layoutNanos));
+            map.put("firstPulseMs", millis(firstPulseNanos));
+            map.put("renderMs", millis(renderNanos));
+            map.put("dataMs", millis(dataNanos));
+            map.put("nodes", nodeCount);
+            return map;
+        }
+
+        private static Double millis(long nanos) {
+            return nanos < 0 ? null : nanos / 1_000_000.0;
+        }
+    }
+}
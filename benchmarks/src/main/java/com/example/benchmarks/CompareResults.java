@@ -0,0 +1,89 @@
+package com.example.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Сравнение двух файлов результатов JMH (-rf json): время и выделение памяти на операцию
+// для каждого замера с одинаковыми параметрами. Замеры, которых нет в одном из файлов,
+// пропускаются.
+//
+//     java -cp target/benchmarks.jar com.example.benchmarks.CompareResults results/baseline.json results/new.json
+public final class CompareResults {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Использование: CompareResults <базовый.json> <новый.json>");
+            System.exit(2);
+        }
+        Map<String, double[]> baseline = read(Paths.get(args[0]));
+        Map<String, double[]> current = read(Paths.get(args[1]));
+
+        System.out.printf("%-90s %14s %14s %8s %14s %14s %8s%n",
+            "Замер", "База", "Сейчас", "Время", "База, Б/оп", "Сейчас, Б/оп", "Память");
+        for (Map.Entry<String, double[]> entry : baseline.entrySet()) {
+            double[] after = current.get(entry.getKey());
+            if (after == null) {
+                continue;
+            }
+            double[] before = entry.getValue();
+            System.out.printf("%-90s %14.3f %14.3f %8s %14.0f %14.0f %8s%n",
+                entry.getKey(), before[0], after[0], change(before[0], after[0]),
+                before[1], after[1], change(before[1], after[1]));
+        }
+    }
+
+    // Название замера с параметрами -> {время на операцию, байт на операцию}
+    private static Map<String, double[]> read(Path file) throws IOException {
+        JsonArray runs;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            runs = JsonParser.parseReader(reader).getAsJsonArray();
+        }
+
+        Map<String, double[]> results = new LinkedHashMap<>();
+        for (JsonElement element : runs) {
+            JsonObject run = element.getAsJsonObject();
+            // Замер определяется классом и методом без пакета, поэтому результаты
+            // сравниваются и после переноса классов замеров в другой пакет
+            String benchmark = run.get("benchmark").getAsString().replaceFirst("^([a-z_]\\w*\\.)+", "");
+            StringBuilder key = new StringBuilder(benchmark);
+            if (run.has("params")) {
+                Map<String, String> params = new TreeMap<>();
+                for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+                    params.put(param.getKey(), param.getValue().getAsString());
+                }
+                key.append(params);
+            }
+            JsonObject primary = run.getAsJsonObject("primaryMetric");
+            double time = primary.get("score").getAsDouble();
+            double allocation = Double.NaN;
+            JsonObject secondary = run.getAsJsonObject("secondaryMetrics");
+            if (secondary != null && secondary.has(ALLOCATION)) {
+                allocation = secondary.getAsJsonObject(ALLOCATION).get("score").getAsDouble();
+            }
+            results.put(key.toString(), new double[] {time, allocation});
+        }
+        return results;
+    }
+
+    private static String change(double before, double after) {
+        if (Double.isNaN(before) || Double.isNaN(after) || before == 0) {
+            return "-";
+        }
+        return String.format("%+.1f%%", (after - before) / before * 100.0);
+    }
+}
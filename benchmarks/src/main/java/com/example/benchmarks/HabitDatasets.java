@@ -0,0 +1,89 @@
+package com.example.benchmarks;
+
+import com.example.DayClock;
+import com.example.Habit;
+import com.example.HabitManager;
+import com.example.StorageFormat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+// Синтетические наборы привычек для замеров. Один и тот же seed дает один и тот же набор,
+// поэтому результаты разных запусков сравнимы. Все даты отсчитываются от END_DATE,
+// а не от текущего дня.
+public final class HabitDatasets {
+    public static final LocalDate END_DATE = LocalDate.of(2025, 12, 31);
+    public static final long SEED = 20251231L;
+
+    private static final String[] FREQUENCIES = {
+        "Ежедневно", "Еженедельно", "Несколько раз в неделю", "Ежемесячно", "По необходимости"
+    };
+
+    private HabitDatasets() {
+    }
+
+    // count привычек с историей за years лет. Привычки бывают трех видов: регулярные
+    // (длинные серии с короткими перерывами), редкие (короткие серии) и брошенные
+    // (история обрывается за несколько месяцев до END_DATE).
+    public static List<Habit> generate(int count, int years, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Habit> habits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDate createdDate = END_DATE.minusDays(years * 365L + random.nextInt(60));
+            Set<LocalDate> completedDates = new HashSet<>();
+            int kind = random.nextInt(10);
+            int meanRun = kind < 6 ? 21 : 4;
+            int meanGap = kind < 6 ? 3 : 6;
+            LocalDate lastDay = kind == 9 ? END_DATE.minusDays(60 + random.nextInt(120)) : END_DATE;
+
+            LocalDate day = createdDate.plusDays(random.nextInt(meanGap + 1));
+            while (!day.isAfter(lastDay)) {
+                int run = 1 + random.nextInt(2 * meanRun);
+                for (int d = 0; d < run && !day.isAfter(lastDay); d++) {
+                    completedDates.add(day);
+                    day = day.plusDays(1);
+                }
+                day = day.plusDays(1 + random.nextInt(2 * meanGap));
+            }
+            habits.add(new Habit(nameOf(i), "Описание привычки " + i,
+                FREQUENCIES[i % FREQUENCIES.length], completedDates, createdDate));
+        }
+        return habits;
+    }
+
+    // Названия уникальны, чтобы поиск по названию находил ровно одну привычку
+    public static String nameOf(int index) {
+        return "Привычка " + index;
+    }
+
+    // Менеджер в каталоге directory с набором привычек и часами, закрепленными на END_DATE.
+    // Набор сразу записывается снимком в формате format.
+    public static HabitManager manager(Path directory, List<Habit> habits, StorageFormat format) {
+        HabitManager manager = new HabitManager(directory);
+        manager.setStorageFormat(format);
+        manager.setDayClock(DayClock.fixed(END_DATE));
+        manager.loadHabits();
+        manager.importHabits(habits);
+        return manager;
+    }
+
+    public static Path createDirectory() throws IOException {
+        return Files.createTempDirectory("habit-bench");
+    }
+
+    public static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.benchmarks;
+
+import com.example.Habit;
+import com.example.HabitManager;
+import com.example.StorageFormat;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Сводные методы HabitManager и поиск привычек. Сводка поддерживается по событиям,
+// поэтому отдельно замеряются чтение готовой сводки, ее пересчет после отметки
+// и полный проход computeSnapshot.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class HabitManagerBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int habitCount;
+
+    @Param({"3"})
+    int years;
+
+    private Path directory;
+    private HabitManager manager;
+    private Habit toggled;
+    private LocalDate toggledDate;
+    private int nameIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<Habit> habits = HabitDatasets.generate(habitCount, years, HabitDatasets.SEED);
+        directory = HabitDatasets.createDirectory();
+        manager = HabitDatasets.manager(directory, habits, StorageFormat.BINARY);
+        toggled = habits.get(habits.size() / 2);
+        toggledDate = HabitDatasets.END_DATE;
+    }
+
+    // Записи toggleCompletion копятся в буфере журнала: без сброса после каждой итерации
+    // буфер растет всю серию, и замер включает его рост и сборку мусора
+    @TearDown(Level.Iteration)
+    public void flushJournal() {
+        manager.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        HabitDatasets.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public void aggregates(Blackhole blackhole) {
+        blackhole.consume(manager.getCompletedTodayCount());
+        blackhole.consume(manager.getOverallSuccessRate());
+        blackhole.consume(manager.getBestPerformingHabit());
+        blackhole.consume(manager.getWorstPerformingHabit());
+        blackhole.consume(manager.getLongestCurrentStreak());
+    }
+
+    // Отметка и снятие отметки через менеджер вместе с обновлением сводки и записью в журнал
+    @Benchmark
+    public void toggleCompletion(Blackhole blackhole) {
+        if (toggled.isCompletedOnDate(toggledDate)) {
+            manager.unmarkCompleted(toggled, toggledDate);
+        } else {
+            manager.markCompleted(toggled, toggledDate);
+        }
+        blackhole.consume(manager.getOverallSuccessRate());
+    }
+
+    @Benchmark
+    public Object computeSnapshot() {
+        return manager.computeSnapshot(HabitDatasets.END_DATE);
+    }
+
+    @Benchmark
+    public Object habitsByFrequency() {
+        return manager.getHabitsByFrequency();
+    }
+
+    @Benchmark
+    public Habit habitByName() {
+        nameIndex = nameIndex + 7919 < habitCount ? nameIndex + 7919 : (nameIndex + 7919) % habitCount;
+        return manager.getHabitByName(HabitDatasets.nameOf(nameIndex));
+    }
+
+    @Benchmark
+    public List<Habit> habits() {
+        return manager.getHabits();
+    }
+}
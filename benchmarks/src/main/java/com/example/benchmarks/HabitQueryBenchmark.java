@@ -0,0 +1,80 @@
+package com.example.benchmarks;
+
+import com.example.Habit;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Запросы к истории одной привычки, пройденные по всему набору.
+// Берутся перегрузки с явной датой: они не запоминают результат, поэтому замер
+// показывает стоимость самого вычисления, а не чтения запомненного значения.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class HabitQueryBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int habitCount;
+
+    @Param({"3"})
+    int years;
+
+    private List<Habit> habits;
+    private LocalDate asOf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        habits = HabitDatasets.generate(habitCount, years, HabitDatasets.SEED);
+        asOf = HabitDatasets.END_DATE;
+    }
+
+    @Benchmark
+    public void successPercentage30(Blackhole blackhole) {
+        for (Habit habit : habits) {
+            blackhole.consume(habit.getSuccessPercentage(30, asOf));
+        }
+    }
+
+    @Benchmark
+    public void successPercentage365(Blackhole blackhole) {
+        for (Habit habit : habits) {
+            blackhole.consume(habit.getSuccessPercentage(365, asOf));
+        }
+    }
+
+    @Benchmark
+    public void currentStreak(Blackhole blackhole) {
+        for (Habit habit : habits) {
+            blackhole.consume(habit.getCurrentStreak(asOf));
+        }
+    }
+
+    @Benchmark
+    public void maxStreak(Blackhole blackhole) {
+        for (Habit habit : habits) {
+            blackhole.consume(habit.getMaxStreak());
+        }
+    }
+
+    @Benchmark
+    public void completedDatesIteration(Blackhole blackhole) {
+        for (Habit habit : habits) {
+            habit.forEachCompletedDate(blackhole::consume);
+        }
+    }
+}
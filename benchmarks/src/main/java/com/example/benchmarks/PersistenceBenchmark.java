@@ -0,0 +1,97 @@
+package com.example.benchmarks;
+
+import com.example.Habit;
+import com.example.HabitManager;
+import com.example.StorageFormat;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Сохранение и загрузка: запись полного снимка, чтение снимка и запись журнала после
+// отметки. Файлы пишутся во временный каталог, а не в текущий. Во время загрузки
+// в памяти одновременно три копии набора: у записывающего менеджера, прежняя и новая
+// у читающего, поэтому кучи нужно больше, чем в остальных замерах.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PersistenceBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int habitCount;
+
+    @Param({"3"})
+    int years;
+
+    @Param({"JSON", "BINARY"})
+    StorageFormat format;
+
+    @Param({"false"})
+    boolean lazy;
+
+    private Path directory;
+    private HabitManager manager;
+    private HabitManager reader;
+    private Habit toggled;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<Habit> habits = HabitDatasets.generate(habitCount, years, HabitDatasets.SEED);
+        directory = HabitDatasets.createDirectory();
+        manager = HabitDatasets.manager(directory, habits, format);
+        toggled = habits.get(0);
+
+        reader = new HabitManager(directory);
+        reader.setStorageFormat(format);
+        reader.setLazyHistoryLoading(lazy);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        manager.close();
+        HabitDatasets.deleteDirectory(directory);
+    }
+
+    // Полный снимок всех привычек с ожиданием записи на диск
+    @Benchmark
+    public void saveSnapshot() {
+        manager.compact();
+    }
+
+    // Чтение снимка, записанного при подготовке
+    @Benchmark
+    public int loadSnapshot() {
+        reader.loadHabits();
+        return reader.getTotalHabits();
+    }
+
+    // Обычное сохранение после отметки: запись в журнал с ожиданием fsync
+    @Benchmark
+    public void saveJournal() {
+        LocalDate today = HabitDatasets.END_DATE;
+        if (toggled.isCompletedOnDate(today)) {
+            manager.unmarkCompleted(toggled, today);
+        } else {
+            manager.markCompleted(toggled, today);
+        }
+        manager.saveHabits();
+        manager.flush();
+    }
+}
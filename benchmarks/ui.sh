@@ -0,0 +1,20 @@
+#!/bin/sh
+# Замер построения представлений JavaFX без экрана (Monocle) с результатом в results/ui-<имя>.json.
+#
+#   ./ui.sh                                  1000, 10000 и 100000 привычек
+#   ./ui.sh baseline                         результат в results/ui-baseline.json
+#   ./ui.sh new --sizes 1000,5000 --repeats 10
+#                                            после имени файла - параметры UiRenderBenchmark
+#
+# Для текста JavaFX на Linux нужна библиотека pango (пакет libpango-1.0-0),
+# без нее замер падает с UnsatisfiedLinkError javafx_font_pango.
+#
+# Перед запуском: mvn install в корне проекта, затем mvn package здесь.
+set -e
+cd "$(dirname "$0")"
+
+name=${1:-$(date +%Y%m%d-%H%M%S)}
+[ $# -gt 0 ] && shift
+
+mkdir -p results
+java -Xmx3g -cp target/benchmarks.jar com.example.UiRenderBenchmark --out "results/ui-$name.json" "$@"
@@ -0,0 +1,256 @@
+package com.example;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+// Компактная история выполнения привычки: один бит на день.
+// Бит 0 слова 0 соответствует дню originDay (epochDay), массив растет словами по 64 дня.
+// Дерево Фенвика над количеством бит в словах дает подсчет за диапазон за O(log n).
+class CompletionHistory {
+    private static final int WORD_BITS = 64;
+    private static final int INITIAL_WORDS = 1;
+    static final long NO_DAY = Long.MIN_VALUE;
+
+    private long originDay;
+    private long[] words;
+    private int[] wordCounts; // дерево Фенвика, индексы с 1
+    private final CompletionRuns runs = new CompletionRuns();
+    private int count;
+
+    CompletionHistory(LocalDate originDate) {
+        this.originDay = originDate.toEpochDay();
+        this.words = new long[INITIAL_WORDS];
+        this.wordCounts = new int[INITIAL_WORDS + 1];
+    }
+
+    // История из готового битового массива, например из двоичного снимка.
+    // Дерево Фенвика и серии строятся за один проход по словам.
+    CompletionHistory(long originDay, long[] words) {
+        this.originDay = originDay;
+        this.words = words.length > 0 ? words : new long[INITIAL_WORDS];
+        rebuildWordCounts();
+        for (long word : this.words) {
+            count += Long.bitCount(word);
+        }
+        runs.fromWords(this.originDay, this.words);
+    }
+
+    static CompletionHistory of(LocalDate originDate, Set<LocalDate> dates) {
+        long[] days = new long[dates.size()];
+        int count = 0;
+        for (LocalDate date : dates) {
+            days[count++] = date.toEpochDay();
+        }
+        return ofDays(originDate.toEpochDay(), days, count);
+    }
+
+    // История из первых count дней массива days (epochDay, в любом порядке, повторы допустимы).
+    // Биты ставятся прямо в слова, без поддержки дерева и серий на каждый день.
+    // Дни раньше originDay сдвигают начало массива назад целыми словами, как в ensureCapacity.
+    static CompletionHistory ofDays(long originDay, long[] days, int count) {
+        long minDay = originDay;
+        long maxDay = originDay;
+        for (int i = 0; i < count; i++) {
+            minDay = Math.min(minDay, days[i]);
+            maxDay = Math.max(maxDay, days[i]);
+        }
+        long origin = originDay - (originDay - minDay + WORD_BITS - 1) / WORD_BITS * WORD_BITS;
+        long[] words = new long[(int) ((maxDay - origin) >>> 6) + 1];
+        for (int i = 0; i < count; i++) {
+            long offset = days[i] - origin;
+            words[(int) (offset >>> 6)] |= 1L << offset;
+        }
+        return new CompletionHistory(origin, words);
+    }
+
+    // Отметить день, возвращает true, если состояние изменилось
+    boolean set(LocalDate date) {
+        return set(date.toEpochDay());
+    }
+
+    boolean set(long day) {
+        ensureCapacity(day);
+        int offset = (int) (day - originDay);
+        int wordIndex = offset >>> 6;
+        long mask = 1L << offset;
+        if ((words[wordIndex] & mask) != 0) {
+            return false;
+        }
+        words[wordIndex] |= mask;
+        addToWordCount(wordIndex, 1);
+        runs.add(day);
+        count++;
+        return true;
+    }
+
+    // Снять отметку, возвращает true, если состояние изменилось
+    boolean clear(LocalDate date) {
+        long day = date.toEpochDay();
+        long offset = day - originDay;
+        if (offset < 0 || offset >= (long) words.length * WORD_BITS) {
+            return false;
+        }
+        int wordIndex = (int) (offset >>> 6);
+        long mask = 1L << offset;
+        if ((words[wordIndex] & mask) == 0) {
+            return false;
+        }
+        words[wordIndex] &= ~mask;
+        addToWordCount(wordIndex, -1);
+        runs.remove(day);
+        count--;
+        return true;
+    }
+
+    boolean get(LocalDate date) {
+        return get(date.toEpochDay());
+    }
+
+    boolean get(long day) {
+        long offset = day - originDay;
+        if (offset < 0 || offset >= (long) words.length * WORD_BITS) {
+            return false;
+        }
+        return (words[(int) (offset >>> 6)] & (1L << offset)) != 0;
+    }
+
+    int cardinality() {
+        return count;
+    }
+
+    long originDay() {
+        return originDay;
+    }
+
+    // Количество слов без нулевых слов в конце массива
+    int usedWords() {
+        int used = words.length;
+        while (used > 0 && words[used - 1] == 0) {
+            used--;
+        }
+        return used;
+    }
+
+    long word(int index) {
+        return words[index];
+    }
+
+    // Количество отмеченных дней в диапазоне [startDay, endDay] включительно
+    int countRange(long startDay, long endDay) {
+        long from = Math.max(startDay - originDay, 0);
+        long to = Math.min(endDay - originDay, (long) words.length * WORD_BITS - 1);
+        if (from > to) {
+            return 0;
+        }
+        return countUpTo((int) to) - (from == 0 ? 0 : countUpTo((int) from - 1));
+    }
+
+    // Количество отмеченных дней со смещением от 0 до offset включительно
+    private int countUpTo(int offset) {
+        int wordIndex = offset >>> 6;
+        long mask = -1L >>> (WORD_BITS - 1 - (offset & 63));
+        return sumOfWordCounts(wordIndex) + Long.bitCount(words[wordIndex] & mask);
+    }
+
+    // Сумма количеств бит в словах [0, wordIndex)
+    private int sumOfWordCounts(int wordIndex) {
+        int sum = 0;
+        for (int i = wordIndex; i > 0; i -= i & -i) {
+            sum += wordCounts[i];
+        }
+        return sum;
+    }
+
+    private void addToWordCount(int wordIndex, int delta) {
+        for (int i = wordIndex + 1; i < wordCounts.length; i += i & -i) {
+            wordCounts[i] += delta;
+        }
+    }
+
+    private void rebuildWordCounts() {
+        wordCounts = new int[words.length + 1];
+        for (int i = 1; i <= words.length; i++) {
+            wordCounts[i] += Long.bitCount(words[i - 1]);
+            int parent = i + (i & -i);
+            if (parent <= words.length) {
+                wordCounts[parent] += wordCounts[i];
+            }
+        }
+    }
+
+    // Длина серии отмеченных дней, заканчивающейся в день endDay
+    int runEndingAt(long endDay) {
+        return runs.runEndingAt(endDay);
+    }
+
+    // Самая длинная серия подряд отмеченных дней
+    int longestRun() {
+        return runs.longestRun();
+    }
+
+    long lastRunStart() {
+        return runs.lastStart();
+    }
+
+    long lastRunEnd() {
+        return runs.lastEnd();
+    }
+
+    // Обход отмеченных дней (epochDay) по возрастанию
+    void forEachDay(LongConsumer action) {
+        for (int i = 0; i < words.length; i++) {
+            long bits = words[i];
+            while (bits != 0) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                action.accept(originDay + (long) i * WORD_BITS + bit);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    // Первый отмеченный день не раньше fromDay или NO_DAY, если таких нет
+    long nextDay(long fromDay) {
+        long offset = fromDay <= originDay ? 0 : fromDay - originDay;
+        int wordIndex = (int) Math.min(offset >>> 6, words.length);
+        if (wordIndex == words.length) {
+            return NO_DAY;
+        }
+        long bits = words[wordIndex] & (-1L << offset);
+        while (bits == 0) {
+            if (++wordIndex == words.length) {
+                return NO_DAY;
+            }
+            bits = words[wordIndex];
+        }
+        return originDay + (long) wordIndex * WORD_BITS + Long.numberOfTrailingZeros(bits);
+    }
+
+    CompletionHistory copy() {
+        CompletionHistory copy = new CompletionHistory(LocalDate.ofEpochDay(originDay));
+        copy.words = words.clone();
+        copy.wordCounts = wordCounts.clone();
+        copy.runs.copyFrom(runs);
+        copy.count = count;
+        return copy;
+    }
+
+    // Расширение массива: вперед удвоением, назад целыми словами со сдвигом начала
+    private void ensureCapacity(long day) {
+        if (day < originDay) {
+            int extraWords = (int) ((originDay - day + WORD_BITS - 1) / WORD_BITS);
+            long[] grown = new long[words.length + extraWords];
+            System.arraycopy(words, 0, grown, extraWords, words.length);
+            words = grown;
+            originDay -= (long) extraWords * WORD_BITS;
+            rebuildWordCounts();
+            return;
+        }
+        int requiredWords = (int) ((day - originDay) >>> 6) + 1;
+        if (requiredWords > words.length) {
+            words = Arrays.copyOf(words, Math.max(requiredWords, words.length * 2));
+            rebuildWordCounts();
+        }
+    }
+}
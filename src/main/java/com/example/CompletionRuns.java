@@ -0,0 +1,145 @@
+package com.example;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// Серии подряд выполненных дней: отсортированные отрезки [start, end] в epochDay.
+// Отметка дня может слить две серии, снятие отметки - разбить одну на две, все за O(log n).
+// Самая длинная серия берется из счетчика длин, поэтому ее укорочение не требует
+// прохода по всем сериям. При загрузке серии строятся за один проход по битовому
+// массиву в fromWords(): по одной вставке на серию, а не на каждый отмеченный день.
+class CompletionRuns {
+    private TreeMap<Long, Long> runs = new TreeMap<>();
+    // Количество серий каждой длины
+    private TreeMap<Long, Integer> lengthCounts = new TreeMap<>();
+    private long maxLength;
+    private long lastStart = Long.MIN_VALUE;
+    private long lastEnd = Long.MIN_VALUE;
+
+    // Серии по словам битового массива: каждый непрерывный участок единичных бит - одна серия
+    void fromWords(long originDay, long[] words) {
+        runs.clear();
+        lengthCounts.clear();
+        long runStart = Long.MIN_VALUE;
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            long base = originDay + (long) i * 64;
+            int bit = 0;
+            while (bit < 64) {
+                if (runStart == Long.MIN_VALUE) {
+                    long ones = word >>> bit;
+                    if (ones == 0) {
+                        break;
+                    }
+                    bit += Long.numberOfTrailingZeros(ones);
+                    runStart = base + bit;
+                }
+                long zeros = ~word >>> bit;
+                if (zeros == 0) {
+                    // Серия продолжается в следующем слове
+                    break;
+                }
+                bit += Long.numberOfTrailingZeros(zeros);
+                addRun(runStart, base + bit - 1);
+                runStart = Long.MIN_VALUE;
+            }
+        }
+        if (runStart != Long.MIN_VALUE) {
+            addRun(runStart, originDay + (long) words.length * 64 - 1);
+        }
+        updateCachedValues();
+    }
+
+    void add(long day) {
+        long start = day;
+        long end = day;
+
+        Map.Entry<Long, Long> left = runs.floorEntry(day);
+        if (left != null && left.getValue() >= day) {
+            return;
+        }
+        if (left != null && left.getValue() == day - 1) {
+            start = left.getKey();
+            removeRun(left.getKey(), left.getValue());
+        }
+
+        Long rightEnd = runs.get(day + 1);
+        if (rightEnd != null) {
+            end = rightEnd;
+            removeRun(day + 1, rightEnd);
+        }
+
+        addRun(start, end);
+        updateCachedValues();
+    }
+
+    void remove(long day) {
+        Map.Entry<Long, Long> run = runs.floorEntry(day);
+        if (run == null || run.getValue() < day) {
+            return;
+        }
+
+        long start = run.getKey();
+        long end = run.getValue();
+        removeRun(start, end);
+        if (start < day) {
+            addRun(start, day - 1);
+        }
+        if (day < end) {
+            addRun(day + 1, end);
+        }
+        updateCachedValues();
+    }
+
+    // Копии деревьев строятся из уже упорядоченных данных за линейное время
+    void copyFrom(CompletionRuns other) {
+        runs = new TreeMap<>(other.runs);
+        lengthCounts = new TreeMap<>(other.lengthCounts);
+        maxLength = other.maxLength;
+        lastStart = other.lastStart;
+        lastEnd = other.lastEnd;
+    }
+
+    // Длина серии, которая включает день day, считая от ее начала до day.
+    // Сначала проверяется последняя серия: запросы почти всегда о последних днях.
+    int runEndingAt(long day) {
+        if (lastStart <= day && day <= lastEnd) {
+            return (int) (day - lastStart + 1);
+        }
+        Map.Entry<Long, Long> run = runs.floorEntry(day);
+        if (run == null || run.getValue() < day) {
+            return 0;
+        }
+        return (int) (day - run.getKey() + 1);
+    }
+
+    int longestRun() {
+        return (int) maxLength;
+    }
+
+    // Начало и конец последней серии, Long.MIN_VALUE, если серий нет
+    long lastStart() {
+        return lastStart;
+    }
+
+    long lastEnd() {
+        return lastEnd;
+    }
+
+    private void addRun(long start, long end) {
+        runs.put(start, end);
+        lengthCounts.merge(end - start + 1, 1, Integer::sum);
+    }
+
+    private void removeRun(long start, long end) {
+        runs.remove(start);
+        lengthCounts.computeIfPresent(end - start + 1, (length, count) -> count == 1 ? null : count - 1);
+    }
+
+    private void updateCachedValues() {
+        maxLength = lengthCounts.isEmpty() ? 0 : lengthCounts.lastKey();
+        Map.Entry<Long, Long> last = runs.lastEntry();
+        lastStart = last != null ? last.getKey() : Long.MIN_VALUE;
+        lastEnd = last != null ? last.getValue() : Long.MIN_VALUE;
+    }
+}
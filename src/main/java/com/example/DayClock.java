@@ -0,0 +1,85 @@
+package com.example;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Источник текущего дня для модели. Дата вычисляется с учетом часового пояса один раз
+// за сутки, дальше today() только сравнивает текущее время с границей следующего дня.
+// При смене дня вызываются слушатели. Для тестов дату можно закрепить через fixed().
+public class DayClock {
+    private static final DayClock SYSTEM = new DayClock(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private final List<Consumer<LocalDate>> rolloverListeners = new CopyOnWriteArrayList<>();
+    private volatile LocalDate today;
+    private volatile long dayStartMillis = Long.MAX_VALUE;
+    private volatile long nextDayMillis = Long.MIN_VALUE;
+
+    public DayClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public static DayClock system() {
+        return SYSTEM;
+    }
+
+    // Часы, у которых всегда один и тот же день
+    public static DayClock fixed(LocalDate date) {
+        return new DayClock(Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+    }
+
+    public LocalDate today() {
+        long now = clock.millis();
+        if (now >= nextDayMillis || now < dayStartMillis) {
+            refresh(now);
+        }
+        return today;
+    }
+
+    public long todayEpochDay() {
+        return today().toEpochDay();
+    }
+
+    // Сколько миллисекунд осталось до смены дня, например для таймера в интерфейсе
+    public long millisUntilNextDay() {
+        today();
+        return Math.max(0, nextDayMillis - clock.millis());
+    }
+
+    // Слушатель вызывается в том потоке, который первым заметил смену дня
+    public void addRolloverListener(Consumer<LocalDate> listener) {
+        rolloverListeners.add(listener);
+    }
+
+    public void removeRolloverListener(Consumer<LocalDate> listener) {
+        rolloverListeners.remove(listener);
+    }
+
+    private void refresh(long now) {
+        LocalDate previous;
+        LocalDate current;
+        synchronized (this) {
+            if (now < nextDayMillis && now >= dayStartMillis) {
+                return;
+            }
+            ZoneId zone = clock.getZone();
+            previous = today;
+            current = LocalDate.ofInstant(Instant.ofEpochMilli(now), zone);
+            // Дата записывается раньше границ: кто видит новые границы, видит и новую дату
+            today = current;
+            dayStartMillis = current.atStartOfDay(zone).toInstant().toEpochMilli();
+            nextDayMillis = current.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+        if (previous != null && !previous.equals(current)) {
+            for (Consumer<LocalDate> listener : rolloverListeners) {
+                listener.accept(current);
+            }
+        }
+    }
+}
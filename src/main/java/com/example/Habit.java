@@ -1,39 +1,148 @@
 package com.example;
 
+import java.lang.ref.SoftReference;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 
+// История выполнения и запомненные значения меняются и читаются под монитором привычки,
+// поэтому одну привычку можно отмечать и читать из разных потоков. Снаружи пакета привычка
+// меняется только через HabitManager: отметки - через markCompleted/unmarkCompleted, название,
+// описание и частота - через updateHabit, который заменяет объект целиком. Только так
+// изменение попадает в журнал, сводную статистику и к слушателям.
 public class Habit {
 	
+    // Период по умолчанию для процента успеха и календаря
+    public static final int DEFAULT_PERIOD_DAYS = 30;
+    
+    // Последний выданный идентификатор. После загрузки продвигается за самый большой
+    // идентификатор из файла, чтобы новые привычки не совпадали с загруженными.
+    private static final AtomicLong lastId = new AtomicLong();
+    
+    // Постоянный идентификатор: сохраняется в файлах и журнале, по нему сравниваются привычки.
+    // 0 только у привычки из старого файла, пока HabitManager не назначит ей идентификатор.
+    private long id;
+    
     private String name;
     private String description;
     private String frequency; // Ежедневно, Еженедельно, и т.д.
-    private Set<LocalDate> completedDates;
+    private CompletionHistory history;
     private LocalDate createdDate;
     
+    // Ленивая загрузка: пока привычка не менялась, история читается из снимка по требованию
+    // и удерживается мягкой ссылкой, чтобы при нехватке памяти ее можно было выгрузить
+    private StoredHistory storedHistory;
+    private SoftReference<CompletionHistory> loadedHistory;
+    
+    // Источник текущего дня. HabitManager подставляет свои часы при добавлении привычки.
+    private DayClock clock;
+    // Значения на текущий день. Сбрасываются при изменении отметок и при смене дня.
+    private long memoDay = Long.MIN_VALUE;
+    private byte memoCompletedToday = MEMO_UNKNOWN;
+    private double memoSuccessPercentage = Double.NaN;
+    private int memoCurrentStreak = -1;
+    private static final byte MEMO_UNKNOWN = -1;
+    
+    // Привычка, созданная сегодня по системным часам
     public Habit(String name, String description, String frequency) {
+        this(name, description, frequency, DayClock.system());
+    }
+    
+    // Привычка, созданная сегодня по часам clock, например HabitManager.getDayClock(),
+    // чтобы дата создания и текущий день менеджера брались из одного источника
+    public Habit(String name, String description, String frequency, DayClock clock) {
+        this.id = lastId.incrementAndGet();
         this.name = name;
         this.description = description;
         this.frequency = frequency;
-        this.completedDates = new HashSet<>();
-        this.createdDate = LocalDate.now();
+        this.clock = clock;
+        this.createdDate = clock.today();
+        this.history = new CompletionHistory(createdDate);
     }
     
-    // Конструктор для загрузки из файла
+    // Конструктор для загрузки из файла. Без даты создания привычка считается созданной
+    // сегодня по системным часам.
     public Habit(String name, String description, String frequency, Set<LocalDate> completedDates, LocalDate createdDate) {
+        this.id = lastId.incrementAndGet();
+        this.clock = DayClock.system();
+        this.name = name;
+        this.description = description;
+        this.frequency = frequency;
+        this.createdDate = createdDate != null ? createdDate : clock.today();
+        this.history = completedDates != null
+            ? CompletionHistory.of(this.createdDate, completedDates)
+            : new CompletionHistory(this.createdDate);
+    }
+    
+    // Конструктор для загрузки с уже построенной историей выполнения.
+    // Дату создания подставляет вызывающий: при загрузке - по часам менеджера.
+    Habit(long id, String name, String description, String frequency, LocalDate createdDate, CompletionHistory history) {
+        this.id = id;
         this.name = name;
         this.description = description;
         this.frequency = frequency;
-        this.completedDates = completedDates != null ? completedDates : new HashSet<>();
-        this.createdDate = createdDate != null ? createdDate : LocalDate.now();
+        this.clock = DayClock.system();
+        this.createdDate = Objects.requireNonNull(createdDate, "createdDate");
+        this.history = history != null ? history : new CompletionHistory(this.createdDate);
+    }
+    
+    // Конструктор для ленивой загрузки: история будет прочитана из снимка при первом обращении
+    Habit(long id, String name, String description, String frequency, LocalDate createdDate, StoredHistory storedHistory) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.frequency = frequency;
+        this.clock = DayClock.system();
+        this.createdDate = createdDate;
+        this.storedHistory = storedHistory;
+    }
+    
+    // Копия для записи снимка в фоновом потоке
+    synchronized Habit snapshotCopy() {
+        if (history == null) {
+            return new Habit(id, name, description, frequency, createdDate, storedHistory);
+        }
+        return new Habit(id, name, description, frequency, createdDate, history.copy());
+    }
+    
+    synchronized void useClock(DayClock clock) {
+        this.clock = clock;
+        memoDay = Long.MIN_VALUE;
+    }
+    
+    // Назначить идентификатор привычке, загруженной из файла без идентификаторов
+    void assignId(long id) {
+        if (this.id != 0) {
+            throw new IllegalStateException("Идентификатор привычки уже назначен: " + this.id);
+        }
+        this.id = id;
+        reserveIds(id);
+    }
+    
+    // Выдать привычке новый идентификатор, если ее идентификатор уже занят в менеджере.
+    // Так бывает с привычкой, созданной до загрузки данных: счетчик еще не знал
+    // идентификаторов из файла.
+    void assignFreshId() {
+        this.id = lastId.incrementAndGet();
+    }
+    
+    // Не выдавать идентификаторы до usedId включительно
+    static void reserveIds(long usedId) {
+        lastId.accumulateAndGet(usedId, Math::max);
     }
     
     // Геттеры и сеттеры
+    public long getId() {
+        return id;
+    }
+    
     public String getName() {
         return name;
     }
     
-    public void setName(String name) {
+    // Название и частота к тому же входят в индексы HabitManager
+    void setName(String name) {
         this.name = name;
     }
     
@@ -41,7 +150,7 @@ public class Habit {
         return description;
     }
     
-    public void setDescription(String description) {
+    void setDescription(String description) {
         this.description = description;
     }
     
@@ -49,112 +158,195 @@ public class Habit {
         return frequency;
     }
     
-    public void setFrequency(String frequency) {
+    void setFrequency(String frequency) {
         this.frequency = frequency;
     }
     
+    // Отмеченные даты без копирования истории: представление только для чтения.
+    // Последующие отметки в нем видны, обход идет по возрастанию дат и не прерывается
+    // параллельными изменениями.
     public Set<LocalDate> getCompletedDates() {
-        return new HashSet<>(completedDates);
+        return new CompletedDates();
+    }
+    
+    // Обход отмеченных дней без создания дат: action получает смещение дня от даты
+    // создания (отрицательное для дней раньше нее). Выполняется под монитором привычки.
+    public synchronized void forEachCompletedDate(IntConsumer action) {
+        long createdDay = createdDate.toEpochDay();
+        getHistory().forEachDay(day -> action.accept((int) (day - createdDay)));
     }
     
     public LocalDate getCreatedDate() {
         return createdDate;
     }
     
-    // Методы для работы с выполнением
-    public void markCompleted(LocalDate date) {
-        completedDates.add(date);
+    // Сама история не защищена: обходить ее нужно под монитором привычки
+    synchronized CompletionHistory getHistory() {
+        if (history != null) {
+            return history;
+        }
+        CompletionHistory loaded = loadedHistory != null ? loadedHistory.get() : null;
+        if (loaded == null) {
+            loaded = storedHistory.load();
+            loadedHistory = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+    
+    // Неизмененная история в снимке, если она сейчас не загружена в память
+    synchronized StoredHistory getColdHistory() {
+        if (history != null || (loadedHistory != null && loadedHistory.get() != null)) {
+            return null;
+        }
+        return storedHistory;
+    }
+    
+    public synchronized boolean isHistoryLoaded() {
+        return getColdHistory() == null;
+    }
+    
+    // Выгрузить историю, если ее можно снова прочитать из снимка
+    public synchronized boolean unloadHistory() {
+        if (history == null && loadedHistory != null) {
+            loadedHistory = null;
+            return true;
+        }
+        return false;
+    }
+    
+    // История для изменения: после первого изменения она больше не выгружается
+    private CompletionHistory mutableHistory() {
+        if (history == null) {
+            history = getHistory();
+            storedHistory = null;
+            loadedHistory = null;
+        }
+        return history;
+    }
+    
+    // Методы для работы с выполнением. Вызываются HabitManager, который пишет изменение в журнал.
+    synchronized void markCompleted(LocalDate date) {
+        mutableHistory().set(date);
+        memoDay = Long.MIN_VALUE;
     }
     
-    public void unmarkCompleted(LocalDate date) {
-        completedDates.remove(date);
+    synchronized void unmarkCompleted(LocalDate date) {
+        mutableHistory().clear(date);
+        memoDay = Long.MIN_VALUE;
     }
     
-    public boolean isCompletedOnDate(LocalDate date) {
-        return completedDates.contains(date);
+    public synchronized boolean isCompletedOnDate(LocalDate date) {
+        StoredHistory cold = getColdHistory();
+        if (cold != null) {
+            long day = date.toEpochDay();
+            if (day > cold.lastRunEnd) {
+                return false;
+            }
+            if (day >= cold.lastRunStart) {
+                return true;
+            }
+        }
+        return getHistory().get(date);
     }
     
-    public boolean isCompletedToday() {
-        return isCompletedOnDate(LocalDate.now());
+    public synchronized boolean isCompletedToday() {
+        LocalDate today = memoToday();
+        if (memoCompletedToday == MEMO_UNKNOWN) {
+            memoCompletedToday = (byte) (isCompletedOnDate(today) ? 1 : 0);
+        }
+        return memoCompletedToday == 1;
     }
     
     // Вычисление процента успешного выполнения за последние 30 дней
-    public double getSuccessPercentage() {
-        LocalDate startDate = LocalDate.now().minusDays(29);
-        LocalDate endDate = LocalDate.now();
-        
-        int totalDays = 0;
-        int completedDays = 0;
+    public synchronized double getSuccessPercentage() {
+        LocalDate today = memoToday();
+        if (Double.isNaN(memoSuccessPercentage)) {
+            memoSuccessPercentage = getSuccessPercentage(DEFAULT_PERIOD_DAYS, today);
+        }
+        return memoSuccessPercentage;
+    }
+    
+    // Процент успешного выполнения за последние days дней (7, 30, 90, 365 и т.д.)
+    public double getSuccessPercentage(int days) {
+        return getSuccessPercentage(days, clock.today());
+    }
+    
+    // Процент успешного выполнения за days дней, заканчивая днем asOf
+    public synchronized double getSuccessPercentage(int days, LocalDate asOf) {
+        LocalDate endDate = asOf;
+        LocalDate startDate = endDate.minusDays(days - 1);
         
-        LocalDate currentDate = startDate;
-        while (!currentDate.isAfter(endDate)) {
-            if (!currentDate.isBefore(createdDate)) { // Считаем только дни после создания привычки
-                totalDays++;
-                if (isCompletedOnDate(currentDate)) {
-                    completedDays++;
-                }
-            }
-            currentDate = currentDate.plusDays(1);
+        // Считаем только дни после создания привычки
+        if (startDate.isBefore(createdDate)) {
+            startDate = createdDate;
         }
         
-        if (totalDays == 0) {
+        long totalDays = endDate.toEpochDay() - startDate.toEpochDay() + 1;
+        if (totalDays <= 0) {
             return 0.0;
         }
         
+        int completedDays = getCompletedDaysInPeriod(startDate, endDate);
         return (double) completedDays / totalDays * 100.0;
     }
     
     // Получить количество выполненных дней за период
-    public int getCompletedDaysInPeriod(LocalDate startDate, LocalDate endDate) {
-        int count = 0;
-        LocalDate currentDate = startDate;
-        
-        while (!currentDate.isAfter(endDate)) {
-            if (isCompletedOnDate(currentDate)) {
-                count++;
-            }
-            currentDate = currentDate.plusDays(1);
+    public synchronized int getCompletedDaysInPeriod(LocalDate startDate, LocalDate endDate) {
+        StoredHistory cold = getColdHistory();
+        if (cold != null && startDate.toEpochDay() > cold.lastRunEnd) {
+            return 0;
         }
-        
-        return count;
+        return getHistory().countRange(startDate.toEpochDay(), endDate.toEpochDay());
     }
     
     // Получить текущую серию выполнения (streak)
-    public int getCurrentStreak() {
-        int streak = 0;
-        LocalDate currentDate = LocalDate.now();
-        
-        while (isCompletedOnDate(currentDate)) {
-            streak++;
-            currentDate = currentDate.minusDays(1);
+    public synchronized int getCurrentStreak() {
+        LocalDate today = memoToday();
+        if (memoCurrentStreak < 0) {
+            memoCurrentStreak = getCurrentStreak(today);
         }
-        
-        return streak;
+        return memoCurrentStreak;
+    }
+    
+    // Серия выполнения, которая заканчивается днем asOf
+    public synchronized int getCurrentStreak(LocalDate asOf) {
+        long today = asOf.toEpochDay();
+        StoredHistory cold = getColdHistory();
+        if (cold != null && (today > cold.lastRunEnd || today >= cold.lastRunStart)) {
+            return today > cold.lastRunEnd ? 0 : (int) (today - cold.lastRunStart + 1);
+        }
+        return getHistory().runEndingAt(today);
     }
     
     // Получить максимальную серию выполнения
-    public int getMaxStreak() {
-        if (completedDates.isEmpty()) {
-            return 0;
+    public synchronized int getMaxStreak() {
+        StoredHistory cold = getColdHistory();
+        if (cold != null) {
+            return cold.maxStreak;
         }
-        
-        // Сортируем даты
-        LocalDate[] sortedDates = completedDates.toArray(new LocalDate[0]);
-        java.util.Arrays.sort(sortedDates);
-        
-        int maxStreak = 1;
-        int currentStreak = 1;
-        
-        for (int i = 1; i < sortedDates.length; i++) {
-            if (sortedDates[i].equals(sortedDates[i-1].plusDays(1))) {
-                currentStreak++;
-            } else {
-                maxStreak = Math.max(maxStreak, currentStreak);
-                currentStreak = 1;
-            }
+        return getHistory().longestRun();
+    }
+    
+    // Первый отмеченный день (epochDay) не раньше fromDay или CompletionHistory.NO_DAY
+    private synchronized long nextCompletedDay(long fromDay) {
+        return getHistory().nextDay(fromDay);
+    }
+    
+    private synchronized int completedDayCount() {
+        StoredHistory cold = getColdHistory();
+        return cold != null ? cold.count : getHistory().cardinality();
+    }
+    
+    // Текущий день; запомненные значения за прошлый день сбрасываются
+    private LocalDate memoToday() {
+        LocalDate today = clock.today();
+        if (today.toEpochDay() != memoDay) {
+            memoDay = today.toEpochDay();
+            memoCompletedToday = MEMO_UNKNOWN;
+            memoSuccessPercentage = Double.NaN;
+            memoCurrentStreak = -1;
         }
-        
-        return Math.max(maxStreak, currentStreak);
+        return today;
     }
     
     @Override
@@ -168,11 +360,46 @@ public class Habit {
         if (obj == null || getClass() != obj.getClass()) return false;
         
         Habit habit = (Habit) obj;
-        return name.equals(habit.name) && createdDate.equals(habit.createdDate);
+        return id == habit.id;
     }
     
     @Override
     public int hashCode() {
-        return name.hashCode() + createdDate.hashCode();
+        return Long.hashCode(id);
+    }
+    
+    // Представление getCompletedDates(): каждый шаг обхода берет монитор привычки заново
+    private class CompletedDates extends AbstractSet<LocalDate> {
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof LocalDate && isCompletedOnDate((LocalDate) o);
+        }
+        
+        @Override
+        public int size() {
+            return completedDayCount();
+        }
+        
+        @Override
+        public Iterator<LocalDate> iterator() {
+            return new Iterator<LocalDate>() {
+                private long next = nextCompletedDay(Long.MIN_VALUE);
+                
+                @Override
+                public boolean hasNext() {
+                    return next != CompletionHistory.NO_DAY;
+                }
+                
+                @Override
+                public LocalDate next() {
+                    if (next == CompletionHistory.NO_DAY) {
+                        throw new NoSuchElementException();
+                    }
+                    LocalDate date = LocalDate.ofEpochDay(next);
+                    next = nextCompletedDay(next + 1);
+                    return date;
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,223 @@
+package com.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Двоичный формат снимка habits.bin (числа в порядке big-endian):
+//   int magic "HBIT", short версия, int количество привычек, затем для каждой привычки
+//   long id, строки name, description, frequency (int длина в байтах UTF-8 или -1 для null),
+//   long createdDate (epochDay), сводка истории (int количество дней, int максимальная серия,
+//   long начало и long конец последней серии), int длина блока истории и сам блок.
+// По длине блока история при ленивой загрузке пропускается и читается из отображенного
+// файла позже. Читается только текущая версия: файлы других версий считаются поврежденными.
+// История хранится в более компактном из двух видов:
+//   HISTORY_DELTAS - varint количество дней, zigzag-varint смещение первого дня
+//                    от createdDate и varint разности между соседними днями;
+//   HISTORY_BITMAP - long начальный день, int количество слов и слова битового массива.
+class HabitBinaryCodec {
+    static final int MAGIC = 0x48424954;
+    static final short VERSION = 3;
+
+    private static final byte HISTORY_DELTAS = 0;
+    private static final byte HISTORY_BITMAP = 1;
+
+    private final ByteArrayOutputStream blockBuffer = new ByteArrayOutputStream();
+
+    void write(List<Habit> habits, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(habits.size());
+
+        for (Habit habit : habits) {
+            data.writeLong(habit.getId());
+            writeString(data, habit.getName());
+            writeString(data, habit.getDescription());
+            writeString(data, habit.getFrequency());
+            long createdDay = habit.getCreatedDate().toEpochDay();
+            data.writeLong(createdDay);
+
+            StoredHistory cold = habit.getColdHistory();
+            if (cold != null) {
+                // Незагруженную историю переносим из старого снимка без разбора
+                writeSummary(data, cold.count, cold.maxStreak, cold.lastRunStart, cold.lastRunEnd);
+                ByteBuffer block = cold.block();
+                byte[] bytes = new byte[block.remaining()];
+                block.get(bytes);
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            } else {
+                CompletionHistory history = habit.getHistory();
+                writeSummary(data, history.cardinality(), history.longestRun(), history.lastRunStart(), history.lastRunEnd());
+                blockBuffer.reset();
+                writeHistory(new DataOutputStream(blockBuffer), history, createdDay);
+                data.writeInt(blockBuffer.size());
+                blockBuffer.writeTo(data);
+            }
+        }
+        data.flush();
+    }
+
+    List<Habit> read(ByteBuffer buffer) throws IOException {
+        return read(buffer, false);
+    }
+
+    // При lazy история каждой привычки остается срезом буфера и разбирается при первом обращении
+    List<Habit> read(ByteBuffer buffer, boolean lazy) throws IOException {
+        if (buffer.remaining() < 10 || buffer.getInt() != MAGIC) {
+            throw new SnapshotFile.CorruptedException("Неизвестный формат двоичного файла");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new SnapshotFile.CorruptedException("Неподдерживаемая версия двоичного файла: " + version);
+        }
+
+        int count = buffer.getInt();
+        List<Habit> habits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = buffer.getLong();
+            String name = readString(buffer);
+            String description = readString(buffer);
+            String frequency = readString(buffer);
+            long createdDay = buffer.getLong();
+            LocalDate createdDate = LocalDate.ofEpochDay(createdDay);
+            int completedCount = buffer.getInt();
+            int maxStreak = buffer.getInt();
+            long lastRunStart = buffer.getLong();
+            long lastRunEnd = buffer.getLong();
+            int blockLength = buffer.getInt();
+            if (blockLength < 0 || blockLength > buffer.remaining()) {
+                throw new SnapshotFile.CorruptedException("Неверная длина истории: " + blockLength);
+            }
+
+            ByteBuffer block = buffer.slice(buffer.position(), blockLength);
+            buffer.position(buffer.position() + blockLength);
+            if (lazy) {
+                StoredHistory stored = new StoredHistory(block, createdDay, completedCount, maxStreak, lastRunStart, lastRunEnd);
+                habits.add(new Habit(id, name, description, frequency, createdDate, stored));
+            } else {
+                habits.add(new Habit(id, name, description, frequency, createdDate, decodeHistory(block, createdDay)));
+            }
+        }
+        return habits;
+    }
+
+    private static void writeSummary(DataOutputStream data, int count, int maxStreak, long lastRunStart, long lastRunEnd)
+            throws IOException {
+        data.writeInt(count);
+        data.writeInt(maxStreak);
+        data.writeLong(lastRunStart);
+        data.writeLong(lastRunEnd);
+    }
+
+    private void writeHistory(DataOutputStream data, CompletionHistory history, long createdDay) throws IOException {
+        int usedWords = history.usedWords();
+        int bitmapBytes = 12 + usedWords * 8;
+        // В среднем разность между днями занимает 1 байт, плюс заголовок
+        int deltaBytes = 10 + history.cardinality();
+
+        if (deltaBytes <= bitmapBytes) {
+            data.writeByte(HISTORY_DELTAS);
+            writeVarLong(data, history.cardinality());
+            long previous = CompletionHistory.NO_DAY;
+            for (long day = history.nextDay(Long.MIN_VALUE); day != CompletionHistory.NO_DAY; day = history.nextDay(day + 1)) {
+                if (previous == CompletionHistory.NO_DAY) {
+                    long offset = day - createdDay;
+                    writeVarLong(data, (offset << 1) ^ (offset >> 63));
+                } else {
+                    writeVarLong(data, day - previous);
+                }
+                previous = day;
+            }
+        } else {
+            data.writeByte(HISTORY_BITMAP);
+            data.writeLong(history.originDay());
+            data.writeInt(usedWords);
+            for (int i = 0; i < usedWords; i++) {
+                data.writeLong(history.word(i));
+            }
+        }
+    }
+
+    static CompletionHistory decodeHistory(ByteBuffer buffer, long createdDay) throws IOException {
+        byte kind = buffer.get();
+        if (kind == HISTORY_BITMAP) {
+            long originDay = buffer.getLong();
+            int wordCount = buffer.getInt();
+            if (wordCount < 0 || wordCount > buffer.remaining() / 8) {
+                throw new SnapshotFile.CorruptedException("Неверный размер истории: " + wordCount);
+            }
+            long[] words = new long[wordCount];
+            buffer.asLongBuffer().get(words);
+            buffer.position(buffer.position() + wordCount * 8);
+            return new CompletionHistory(originDay, words);
+        }
+        if (kind != HISTORY_DELTAS) {
+            throw new SnapshotFile.CorruptedException("Неизвестный вид истории: " + kind);
+        }
+
+        long count = readVarLong(buffer);
+        // Каждый день занимает в блоке хотя бы один байт
+        if (count < 0 || count > buffer.remaining()) {
+            throw new SnapshotFile.CorruptedException("Неверное количество дней истории: " + count);
+        }
+        long[] days = new long[(int) count];
+        long day = 0;
+        for (int i = 0; i < days.length; i++) {
+            long value = readVarLong(buffer);
+            day = i == 0 ? createdDay + ((value >>> 1) ^ -(value & 1)) : day + value;
+            days[i] = day;
+        }
+        return CompletionHistory.ofDays(createdDay, days, days.length);
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        if (value == null) {
+            data.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new SnapshotFile.CorruptedException("Неверная длина строки: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SnapshotFile.CorruptedException("Неверное число переменной длины");
+    }
+}
@@ -0,0 +1,103 @@
+package com.example;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.function.BiConsumer;
+
+// Ячейка календаря выполнения за последние 30 дней. Узлы создаются один раз на ячейку
+// и переиспользуются ListView при прокрутке, поэтому число узлов зависит от количества
+// видимых привычек, а не от общего.
+class HabitCalendarCell extends ListCell<Habit> {
+    private static final int DAYS = 30;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final HabitManager habitManager;
+    private final BiConsumer<Habit, LocalDate> dayClickHandler;
+
+    private final VBox habitBox = new VBox(10);
+    private final Label nameLabel = new Label();
+    private final Label percentLabel = new Label();
+    private final Rectangle[] dayRects = new Rectangle[DAYS];
+    // Одна подсказка на ячейку, текст меняется при наведении на день
+    private final Tooltip tooltip = new Tooltip();
+    private LocalDate startDate;
+
+    HabitCalendarCell(HabitManager habitManager, BiConsumer<Habit, LocalDate> dayClickHandler) {
+        this.habitManager = habitManager;
+        this.dayClickHandler = dayClickHandler;
+
+        habitBox.setStyle("-fx-border-color: #cccccc; -fx-border-width: 1; -fx-padding: 10;");
+
+        // Заголовок с названием привычки и процентом выполнения
+        HBox headerBox = new HBox(10);
+        headerBox.setAlignment(Pos.CENTER_LEFT);
+        nameLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
+        percentLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #666;");
+        headerBox.getChildren().addAll(nameLabel, percentLabel);
+
+        // Календарь за последние 30 дней
+        GridPane calendar = new GridPane();
+        calendar.setHgap(2);
+        calendar.setVgap(2);
+
+        for (int i = 0; i < DAYS; i++) {
+            int dayIndex = i;
+            Rectangle dayRect = new Rectangle(20, 20);
+            dayRect.setStroke(Color.BLACK);
+            dayRect.setStrokeWidth(0.5);
+
+            Tooltip.install(dayRect, tooltip);
+            dayRect.setOnMouseEntered(e -> tooltip.setText(startDate.plusDays(dayIndex).format(DATE_FORMAT)));
+
+            // Обработчик клика для отметки выполнения
+            dayRect.setOnMouseClicked(e -> {
+                Habit habit = getItem();
+                if (habit != null) {
+                    dayClickHandler.accept(habit, startDate.plusDays(dayIndex));
+                    render(habit);
+                }
+            });
+
+            dayRects[i] = dayRect;
+            calendar.add(dayRect, i % 10, i / 10);
+        }
+
+        Label calendarLabel = new Label("Календарь выполнения (последние 30 дней):");
+        calendarLabel.setStyle("-fx-font-size: 12px;");
+
+        habitBox.getChildren().addAll(headerBox, calendarLabel, calendar);
+    }
+
+    @Override
+    protected void updateItem(Habit habit, boolean empty) {
+        super.updateItem(habit, empty);
+        setText(null);
+
+        if (empty || habit == null) {
+            setGraphic(null);
+        } else {
+            render(habit);
+            setGraphic(habitBox);
+        }
+    }
+
+    private void render(Habit habit) {
+        StatisticsSnapshot.HabitSummary summary = habitManager.computeSummary(habit, habitManager.getDayClock().today());
+        startDate = summary.getAsOf().minusDays(DAYS - 1);
+
+        nameLabel.setText(summary.getName());
+        percentLabel.setText(String.format("%.1f%%", summary.getSuccessPercentage()));
+        for (int i = 0; i < DAYS; i++) {
+            dayRects[i].setFill(summary.isCompletedOn(startDate.plusDays(i)) ? Color.GREEN : Color.LIGHTGRAY);
+        }
+    }
+}
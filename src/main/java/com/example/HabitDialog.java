@@ -10,7 +10,8 @@ public class HabitDialog extends Dialog<Habit> {
     private TextArea descriptionArea;
     private ComboBox<String> frequencyComboBox;
     
-    public HabitDialog(Stage parentStage, String title, Habit existingHabit) {
+    // Новая привычка получает дату создания по часам dayClock
+    public HabitDialog(Stage parentStage, String title, Habit existingHabit, DayClock dayClock) {
         setTitle(title);
         setHeaderText(null);
         
@@ -88,7 +89,8 @@ public class HabitDialog extends Dialog<Habit> {
                 return new Habit(
                     nameField.getText().trim(),
                     descriptionArea.getText().trim(),
-                    frequencyComboBox.getValue()
+                    frequencyComboBox.getValue(),
+                    dayClock
                 );
             }
             return null;
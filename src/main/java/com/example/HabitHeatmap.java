@@ -0,0 +1,128 @@
+package com.example;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Tooltip;
+import javafx.scene.paint.Color;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+
+// Тепловая карта выполнения привычки на одном Canvas: столбцы - недели, строки - дни недели
+// с понедельника, как в календаре активности GitHub. Все дни рисуются в одном узле,
+// поэтому число узлов не зависит от длины периода. Клики и подсказки сопоставляются
+// с датами по координатам.
+class HabitHeatmap extends Canvas {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final Color COMPLETED_COLOR = Color.GREEN;
+    private static final Color MISSED_COLOR = Color.LIGHTGRAY;
+    private static final Color BORDER_COLOR = Color.BLACK;
+
+    private final int days;
+    private final double cellSize;
+    private final double gap;
+    // Подсказка создается при первом наведении
+    private Tooltip tooltip;
+    private Consumer<LocalDate> dayClickHandler = date -> { };
+
+    private LocalDate startDate;
+    private LocalDate endDate;
+    // Понедельник недели, с которой начинается первый столбец
+    private LocalDate firstWeekStart;
+    private LocalDate hoveredDate;
+
+    HabitHeatmap(int days, double cellSize, double gap) {
+        this.days = days;
+        this.cellSize = cellSize;
+        this.gap = gap;
+
+        // Недель в периоде не больше, чем days / 7 + 2 (неполные первая и последняя)
+        setWidth((days / 7 + 2) * (cellSize + gap));
+        setHeight(7 * (cellSize + gap));
+
+        setOnMouseMoved(e -> updateHoveredDate(dateAt(e.getX(), e.getY())));
+        setOnMouseExited(e -> updateHoveredDate(null));
+        setOnMouseClicked(e -> {
+            LocalDate date = dateAt(e.getX(), e.getY());
+            if (date != null) {
+                dayClickHandler.accept(date);
+            }
+        });
+    }
+
+    void setOnDayClicked(Consumer<LocalDate> dayClickHandler) {
+        this.dayClickHandler = dayClickHandler;
+    }
+
+    // Нарисовать выполнение привычки за days дней, заканчивая днем endDate
+    void draw(Habit habit, LocalDate endDate) {
+        this.endDate = endDate;
+        this.startDate = endDate.minusDays(days - 1);
+        this.firstWeekStart = startDate.minusDays(startDate.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, getWidth(), getHeight());
+        gc.setStroke(BORDER_COLOR);
+        gc.setLineWidth(0.5);
+
+        // Сначала все дни периода серым, затем поверх - выполненные по истории привычки
+        long start = startDate.toEpochDay();
+        long end = endDate.toEpochDay();
+        gc.setFill(MISSED_COLOR);
+        for (long day = start; day <= end; day++) {
+            fillDay(gc, day);
+        }
+
+        gc.setFill(COMPLETED_COLOR);
+        synchronized (habit) {
+            CompletionHistory history = habit.getHistory();
+            for (long day = history.nextDay(start); day != CompletionHistory.NO_DAY && day <= end; day = history.nextDay(day + 1)) {
+                fillDay(gc, day);
+            }
+        }
+    }
+
+    // Дата под точкой (x, y) или null, если там нет дня периода
+    LocalDate dateAt(double x, double y) {
+        if (startDate == null || x < 0 || y < 0) {
+            return null;
+        }
+        double step = cellSize + gap;
+        int column = (int) (x / step);
+        int row = (int) (y / step);
+        if (row >= 7 || x - column * step > cellSize || y - row * step > cellSize) {
+            return null;
+        }
+
+        LocalDate date = firstWeekStart.plusDays(column * 7L + row);
+        return date.isBefore(startDate) || date.isAfter(endDate) ? null : date;
+    }
+
+    private void fillDay(GraphicsContext gc, long day) {
+        long offset = day - firstWeekStart.toEpochDay();
+        double x = (offset / 7) * (cellSize + gap);
+        double y = (offset % 7) * (cellSize + gap);
+        gc.fillRect(x, y, cellSize, cellSize);
+        gc.strokeRect(x, y, cellSize, cellSize);
+    }
+
+    // Подсказка с датой показывается только над днями периода
+    private void updateHoveredDate(LocalDate date) {
+        if (date == null ? hoveredDate == null : date.equals(hoveredDate)) {
+            return;
+        }
+        hoveredDate = date;
+        if (date == null) {
+            if (tooltip != null) {
+                Tooltip.uninstall(this, tooltip);
+            }
+        } else {
+            if (tooltip == null) {
+                tooltip = new Tooltip();
+            }
+            tooltip.setText(date.format(DATE_FORMAT));
+            Tooltip.install(this, tooltip);
+        }
+    }
+}
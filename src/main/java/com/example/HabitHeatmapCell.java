@@ -0,0 +1,69 @@
+package com.example;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import java.time.LocalDate;
+import java.util.function.BiConsumer;
+
+// Ячейка календаря с тепловой картой на Canvas вместо отдельного узла на каждый день
+class HabitHeatmapCell extends ListCell<Habit> {
+    private final HabitManager habitManager;
+    // Период карты: за него же считается процент в заголовке
+    private final int days;
+
+    private final VBox habitBox = new VBox(10);
+    private final Label nameLabel = new Label();
+    private final Label percentLabel = new Label();
+    private final HabitHeatmap heatmap;
+
+    HabitHeatmapCell(HabitManager habitManager, BiConsumer<Habit, LocalDate> dayClickHandler, int days, double cellSize) {
+        this.habitManager = habitManager;
+        this.days = days;
+        this.heatmap = new HabitHeatmap(days, cellSize, 2);
+
+        habitBox.setStyle("-fx-border-color: #cccccc; -fx-border-width: 1; -fx-padding: 10;");
+
+        // Заголовок с названием привычки и процентом выполнения
+        HBox headerBox = new HBox(10);
+        headerBox.setAlignment(Pos.CENTER_LEFT);
+        nameLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
+        percentLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #666;");
+        headerBox.getChildren().addAll(nameLabel, percentLabel);
+
+        heatmap.setOnDayClicked(date -> {
+            Habit habit = getItem();
+            if (habit != null) {
+                dayClickHandler.accept(habit, date);
+                render(habit);
+            }
+        });
+
+        Label calendarLabel = new Label("Календарь выполнения (последние " + days + " дней):");
+        calendarLabel.setStyle("-fx-font-size: 12px;");
+
+        habitBox.getChildren().addAll(headerBox, calendarLabel, heatmap);
+    }
+
+    @Override
+    protected void updateItem(Habit habit, boolean empty) {
+        super.updateItem(habit, empty);
+        setText(null);
+
+        if (empty || habit == null) {
+            setGraphic(null);
+        } else {
+            render(habit);
+            setGraphic(habitBox);
+        }
+    }
+
+    private void render(Habit habit) {
+        LocalDate today = habitManager.getDayClock().today();
+        nameLabel.setText(habit.getName());
+        percentLabel.setText(String.format("%.1f%%", habit.getSuccessPercentage(days, today)));
+        heatmap.draw(habit, today);
+    }
+}
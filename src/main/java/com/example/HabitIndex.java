@@ -0,0 +1,177 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Индексы привычек HabitManager. Индекс меняется на месте: изменения делает только
+// HabitManager под своим indexLock, по одному за раз. Все отображения потокобезопасны,
+// поэтому читать индекс можно из любого потока без блокировок. Добавление, удаление
+// и замена стоят O(log n), а не копию всего индекса.
+class HabitIndex {
+    // Вместо null в ключах вторичных индексов: ConcurrentHashMap не допускает null
+    private static final String NO_KEY = "\u0000";
+
+    // Основной индекс по идентификатору привычки
+    private final ConcurrentMap<Long, Entry> byId = new ConcurrentHashMap<>();
+    // Привычки в порядке добавления: позиция в списке не меняется при замене
+    private final NavigableMap<Long, Entry> byPosition = new ConcurrentSkipListMap<>();
+    // Вторичные индексы. Внутри привычки упорядочены по позиции в списке,
+    // как и при прежнем линейном поиске.
+    private final ConcurrentMap<String, NavigableMap<Long, Habit>> byName = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, NavigableMap<Long, Habit>> byFrequency = new ConcurrentHashMap<>();
+    private long nextPosition;
+    // Номер изменения. Меняется после каждого добавления, удаления и замены.
+    private volatile long version;
+    // Список привычек для чтения. Строится при первом обращении после изменения
+    // и дальше отдается всем без копирования.
+    private volatile HabitsView habitsView;
+
+    Entry get(long id) {
+        return byId.get(id);
+    }
+
+    Habit habit(long id) {
+        Entry entry = byId.get(id);
+        return entry != null ? entry.habit : null;
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    // Записи в порядке списка. Обход не прерывается параллельными изменениями.
+    Collection<Entry> entries() {
+        return byPosition.values();
+    }
+
+    // Гонка при первом обращении безопасна: список, собранный во время изменения,
+    // сохраняется с прежним номером и при следующем обращении строится заново
+    List<Habit> habits() {
+        long current = version;
+        HabitsView view = habitsView;
+        if (view == null || view.version != current) {
+            List<Habit> result = new ArrayList<>(byPosition.size());
+            for (Entry entry : byPosition.values()) {
+                result.add(entry.habit);
+            }
+            view = new HabitsView(current, Collections.unmodifiableList(result));
+            habitsView = view;
+        }
+        return view.habits;
+    }
+
+    // Привычки с таким названием по позиции в списке или null
+    NavigableMap<Long, Habit> withName(String name) {
+        return byName.get(key(name));
+    }
+
+    NavigableMap<Long, Habit> withFrequency(String frequency) {
+        return byFrequency.get(key(frequency));
+    }
+
+    // Количество привычек по частоте
+    Map<String, Integer> frequencyCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, NavigableMap<Long, Habit>> entry : byFrequency.entrySet()) {
+            String frequency = entry.getKey().equals(NO_KEY) ? null : entry.getKey();
+            counts.put(frequency, entry.getValue().size());
+        }
+        return counts;
+    }
+
+    // Добавить привычку в конец списка, null если привычка с таким идентификатором уже есть
+    Entry insert(Habit habit) {
+        if (byId.containsKey(habit.getId())) {
+            return null;
+        }
+        Entry entry = new Entry(habit, nextPosition++);
+        byId.put(habit.getId(), entry);
+        byPosition.put(entry.position, entry);
+        indexSecondary(entry);
+        version++;
+        return entry;
+    }
+
+    void delete(Entry entry) {
+        byId.remove(entry.habit.getId());
+        byPosition.remove(entry.position);
+        unindexSecondary(entry);
+        version++;
+    }
+
+    // Новая привычка с тем же идентификатором занимает место старой в списке
+    Entry replace(Entry entry, Habit newHabit) {
+        unindexSecondary(entry);
+        Entry newEntry = new Entry(newHabit, entry.position);
+        byId.put(newHabit.getId(), newEntry);
+        byPosition.put(newEntry.position, newEntry);
+        indexSecondary(newEntry);
+        version++;
+        return newEntry;
+    }
+
+    private void indexSecondary(Entry entry) {
+        addToGroup(byName, entry.name, entry);
+        addToGroup(byFrequency, entry.frequency, entry);
+    }
+
+    private void unindexSecondary(Entry entry) {
+        removeFromGroup(byName, entry.name, entry);
+        removeFromGroup(byFrequency, entry.frequency, entry);
+    }
+
+    private static void addToGroup(ConcurrentMap<String, NavigableMap<Long, Habit>> groups, String key, Entry entry) {
+        groups.computeIfAbsent(key(key), k -> new ConcurrentSkipListMap<>()).put(entry.position, entry.habit);
+    }
+
+    // Опустевшая группа убирается; читатель, который уже получил ее, увидит пустую группу
+    private static void removeFromGroup(ConcurrentMap<String, NavigableMap<Long, Habit>> groups, String key, Entry entry) {
+        NavigableMap<Long, Habit> group = groups.get(key(key));
+        if (group == null) {
+            return;
+        }
+        group.remove(entry.position);
+        if (group.isEmpty()) {
+            groups.remove(key(key));
+        }
+    }
+
+    private static String key(String value) {
+        return value != null ? value : NO_KEY;
+    }
+
+    // Запись основного индекса. Название и частота запоминаются на момент индексации,
+    // чтобы запись можно было убрать из вторичных индексов, даже если объект привычки
+    // изменили в обход HabitManager.updateHabit.
+    static class Entry {
+        final Habit habit;
+        final long position;
+        final String name;
+        final String frequency;
+
+        Entry(Habit habit, long position) {
+            this.habit = habit;
+            this.position = position;
+            this.name = habit.getName();
+            this.frequency = habit.getFrequency();
+        }
+    }
+
+    private static class HabitsView {
+        final long version;
+        final List<Habit> habits;
+
+        HabitsView(long version, List<Habit> habits) {
+            this.version = version;
+            this.habits = habits;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+// Журнал изменений привычек: одна JSON-запись на строку, только дозапись в конец.
+// Оборванная при сбое последняя строка отрезается перед первой дозаписью, иначе новые
+// записи склеились бы с ней в одну испорченную строку.
+// Записи копятся в памяти и сбрасываются на диск одной операцией с fsync в sync().
+// append() можно вызывать из любого потока и он не берет общих замков: записи встают
+// в неблокирующую очередь. Запись на диск - только из потока сохранения.
+// При компактизации текущий журнал переименовывается в rotatedPath и удаляется,
+// когда снимок с его изменениями уже записан.
+class HabitJournal implements Closeable {
+    static final String OP_ADD = "add";
+    static final String OP_REMOVE = "remove";
+    static final String OP_UPDATE = "update";
+    static final String OP_MARK = "mark";
+    static final String OP_UNMARK = "unmark";
+
+    private final Path path;
+    private final Path rotatedPath;
+    private final Gson gson = new Gson();
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+    private FileChannel channel;
+    private volatile long size = -1;
+
+    HabitJournal(Path path) {
+        this.path = path;
+        this.rotatedPath = path.resolveSibling(path.getFileName() + ".old");
+    }
+
+    void append(Record record) {
+        pending.add(gson.toJson(record));
+    }
+
+    // Забрать накопленные записи для записи на диск в порядке добавления
+    String drainPending() {
+        StringBuilder chunk = new StringBuilder();
+        String line;
+        while ((line = pending.poll()) != null) {
+            chunk.append(line).append('\n');
+        }
+        return chunk.toString();
+    }
+
+    // Записать накопленные записи одним вызовом и дождаться сброса на диск
+    void sync() throws IOException {
+        write(drainPending());
+    }
+
+    // Возвращает количество записанных байт
+    int write(String chunk) throws IOException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        if (channel == null) {
+            openChannel();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(chunk.getBytes(StandardCharsets.UTF_8));
+        long written = size;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        channel.force(false);
+        size = written;
+        return buffer.limit();
+    }
+
+    // Открыть журнал для дозаписи, отрезав все после последнего перевода строки
+    private void openChannel() throws IOException {
+        FileChannel opened = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        try {
+            long end = lastLineEnd(opened);
+            if (end < opened.size()) {
+                opened.truncate(end);
+                opened.force(false);
+            }
+            opened.position(end);
+            size = end;
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+        channel = opened;
+    }
+
+    // Позиция сразу после последнего '\n' или 0, если его нет
+    private static long lastLineEnd(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long end = channel.size();
+        while (end > 0) {
+            int length = (int) Math.min(buffer.capacity(), end);
+            long start = end - length;
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    // Размер журнала на диске в байтах, можно читать из любого потока
+    long size() {
+        long current = size;
+        if (current < 0) {
+            try {
+                current = Files.exists(path) ? Files.size(path) : 0;
+            } catch (IOException e) {
+                current = 0;
+            }
+            size = current;
+        }
+        return current;
+    }
+
+    // Отложить текущий журнал для компактизации, новые записи пойдут в пустой файл.
+    // Если предыдущая компактизация не завершилась, журнал дописывается к отложенному.
+    void rotate() throws IOException {
+        // Оборванную строку отрезаем до переноса, иначе она склеится со следующими записями
+        if (channel == null && Files.exists(path)) {
+            openChannel();
+        }
+        closeChannel();
+        size = 0;
+        if (!Files.exists(path)) {
+            return;
+        }
+        if (Files.exists(rotatedPath)) {
+            Files.write(rotatedPath, Files.readAllBytes(path), StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+            Files.delete(path);
+        } else {
+            Files.move(path, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        SnapshotFile.syncDirectory(path);
+    }
+
+    // Удалить отложенный журнал после успешной записи снимка
+    void discardRotated() throws IOException {
+        Files.deleteIfExists(rotatedPath);
+    }
+
+    // Воспроизвести отложенный и текущий журналы по порядку. Поврежденные строки
+    // (например, оборванная при сбое последняя) пропускаются, остальные записи
+    // применяются. Возвращает количество пропущенных строк.
+    int replay(Consumer<Record> consumer) throws IOException {
+        return replayFile(rotatedPath, consumer) + replayFile(path, consumer);
+    }
+
+    private int replayFile(Path file, Consumer<Record> consumer) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        int skipped = 0;
+        // Оборванный символ UTF-8 заменяется, а не прерывает чтение всего файла
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Record record;
+                try {
+                    record = gson.fromJson(line, Record.class);
+                } catch (JsonParseException e) {
+                    record = null;
+                }
+                if (record != null && record.op != null) {
+                    consumer.accept(record);
+                } else {
+                    skipped++;
+                }
+            }
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        closeChannel();
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // Запись журнала. Привычка определяется идентификатором,
+    // даты хранятся в формате ISO (yyyy-MM-dd).
+    static class Record {
+        String op;
+        // Идентификатор привычки; запись без него (0) пропускается при воспроизведении
+        long id;
+        String name;
+        String created;
+        String newName;
+        String description;
+        String frequency;
+        String date;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Потоковое чтение и запись habits.json через JsonReader/JsonWriter.
+// Привычки строятся прямо при чтении, без промежуточного списка объектов и множеств дат.
+// Формат совпадает с прежним: массив объектов с полями name, description, frequency,
+// createdDate и completedDates, плюс постоянный идентификатор id. В старых файлах его нет,
+// такие привычки читаются с id 0, и HabitManager назначает им идентификаторы при загрузке.
+class HabitJsonCodec {
+    private static final LocalDateAdapter DATE_ADAPTER = new LocalDateAdapter();
+
+    private final boolean prettyPrinting;
+
+    HabitJsonCodec(boolean prettyPrinting) {
+        this.prettyPrinting = prettyPrinting;
+    }
+
+    void write(List<Habit> habits, Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        if (prettyPrinting) {
+            writer.setIndent("  ");
+        }
+
+        writer.beginArray();
+        for (Habit habit : habits) {
+            writeHabit(writer, habit);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    // Привычка без даты создания считается созданной сегодня по часам clock.
+    // Ошибка разбора - IOException (MalformedJsonException, EOFException) или RuntimeException.
+    List<Habit> read(Reader in, DayClock clock) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        List<Habit> habits = new ArrayList<>();
+
+        JsonToken first;
+        try {
+            first = reader.peek();
+        } catch (EOFException e) {
+            // Пустой файл, как и null, - пустой список: так его читала прежняя версия через Gson
+            return habits;
+        }
+        if (first == JsonToken.NULL) {
+            reader.nextNull();
+            return habits;
+        }
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            habits.add(readHabit(reader, clock));
+        }
+        reader.endArray();
+        return habits;
+    }
+
+    private void writeHabit(JsonWriter writer, Habit habit) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(habit.getId());
+        writer.name("name").value(habit.getName());
+        writer.name("description").value(habit.getDescription());
+        writer.name("frequency").value(habit.getFrequency());
+        writer.name("createdDate");
+        DATE_ADAPTER.write(writer, habit.getCreatedDate());
+
+        writer.name("completedDates").beginArray();
+        CompletionHistory history = habit.getHistory();
+        for (long day = history.nextDay(Long.MIN_VALUE); day != CompletionHistory.NO_DAY; day = history.nextDay(day + 1)) {
+            DATE_ADAPTER.write(writer, LocalDate.ofEpochDay(day));
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private Habit readHabit(JsonReader reader, DayClock clock) throws IOException {
+        long id = 0;
+        String name = null;
+        String description = null;
+        String frequency = null;
+        LocalDate createdDate = null;
+        long[] days = new long[16];
+        int dayCount = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = reader.nextLong();
+                    break;
+                case "name":
+                    name = readString(reader);
+                    break;
+                case "description":
+                    description = readString(reader);
+                    break;
+                case "frequency":
+                    frequency = readString(reader);
+                    break;
+                case "createdDate":
+                    createdDate = DATE_ADAPTER.read(reader);
+                    break;
+                case "completedDates":
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                        break;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (dayCount == days.length) {
+                            days = Arrays.copyOf(days, dayCount * 2);
+                        }
+                        days[dayCount++] = DATE_ADAPTER.read(reader).toEpochDay();
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (createdDate == null) {
+            createdDate = clock.today();
+        }
+        CompletionHistory history = CompletionHistory.ofDays(createdDate.toEpochDay(), days, dayCount);
+        return new Habit(id, name, description, frequency, createdDate, history);
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    // Адаптер для сериализации LocalDate
+    static class LocalDateAdapter extends TypeAdapter<LocalDate> {
+        private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+
+        @Override
+        public void write(JsonWriter out, LocalDate date) throws IOException {
+            if (date == null) {
+                out.nullValue();
+                return;
+            }
+            out.value(formatter.format(date));
+        }
+
+        @Override
+        public LocalDate read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return LocalDate.parse(in.nextString(), formatter);
+        }
+    }
+}
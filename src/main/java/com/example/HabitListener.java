@@ -0,0 +1,25 @@
+package com.example;
+
+import java.time.LocalDate;
+
+// Уведомления об изменениях привычек в HabitManager. Вызываются в том потоке,
+// который изменил данные, сразу после изменения. Нужные методы переопределяются,
+// остальные ничего не делают.
+public interface HabitListener {
+    default void habitAdded(Habit habit) {
+    }
+
+    default void habitRemoved(Habit habit) {
+    }
+
+    // updateHabit заменяет объект привычки: newHabit имеет тот же идентификатор
+    default void habitUpdated(Habit oldHabit, Habit newHabit) {
+    }
+
+    default void completionChanged(Habit habit, LocalDate date) {
+    }
+
+    // Все привычки загружены заново
+    default void habitsReloaded() {
+    }
+}
@@ -1,192 +1,856 @@
 package com.example;
 
-import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
 import java.io.*;
-import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+// Менеджер можно использовать из нескольких потоков. Чтение индексов не блокируется:
+// добавление, удаление и замена привычки меняют индекс на месте под indexLock, по одной
+// за раз. Отметки выполнения блокируют только свою привычку (ее монитор), поэтому
+// отметки разных привычек идут параллельно. Сводная статистика защищена своим монитором,
+// но отметки его не берут: они только помечают привычку измененной, а сводка
+// пересчитывает помеченные привычки при следующем чтении.
+// Порядок захвата: indexLock, затем statistics, затем привычка.
 public class HabitManager {
-    private List<Habit> habits;
-    private static final String DATA_FILE = "habits.json";
-    private Gson gson;
+    private volatile HabitIndex index = new HabitIndex();
+    private final Object indexLock = new Object();
+    // Сводная статистика обновляется по изменениям, сделанным через менеджер
+    private final HabitStatistics statistics = new HabitStatistics();
+    // Идентификаторы привычек, отметки которых изменились после последнего чтения сводки
+    private final Set<Long> changedHabits = ConcurrentHashMap.newKeySet();
+    // Текущий день для привычек и статистики
+    private volatile DayClock dayClock = DayClock.system();
+    private final List<HabitListener> listeners = new CopyOnWriteArrayList<>();
+    private static final String JOURNAL_FILE = "habits.journal";
+    // Размер журнала, после которого он сворачивается в новый снимок
+    private static final long COMPACTION_THRESHOLD_BYTES = 256 * 1024;
+    private volatile StorageFormat storageFormat = StorageFormat.fromSystemProperty();
+    private boolean lazyHistoryLoading = Boolean.getBoolean(StorageFormat.LAZY_PROPERTY);
+    private volatile HabitJsonCodec jsonCodec = new HabitJsonCodec(false);
+    private final HabitBinaryCodec binaryCodec = new HabitBinaryCodec();
+    // Каталог, в котором лежат снимок и журнал
+    private final Path dataDirectory;
+    private final HabitJournal journal;
+    // Все операции с диском выполняются по очереди в одном фоновом потоке.
+    // Поток фоновый (daemon) и не держит JVM, поэтому владелец менеджера должен
+    // закрыть его через close(), в том числе при завершении JVM.
+    private final ExecutorService persistenceExecutor;
+    // close() может прийти одновременно из приложения и из обработчика завершения JVM
+    private final Object closeLock = new Object();
+    private boolean closed;
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private volatile Consumer<IOException> errorHandler = e -> System.err.println(e.getMessage());
+    // Время загрузки и записи, объем записанного, частота изменений
+    private final HabitMetrics metrics = new HabitMetrics();
     
     public HabitManager() {
-        this.habits = new ArrayList<>();
-        
-        // Настройка Gson для работы с LocalDate
-        GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.registerTypeAdapter(LocalDate.class, new LocalDateAdapter());
-        this.gson = gsonBuilder.setPrettyPrinting().create();
+        this(Paths.get(""));
+    }
+    
+    // Менеджер с файлами данных в каталоге dataDirectory, а не в текущем каталоге
+    public HabitManager(Path dataDirectory) {
+        this.dataDirectory = dataDirectory;
+        this.journal = new HabitJournal(dataDirectory.resolve(JOURNAL_FILE));
+        this.persistenceExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "habit-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metrics.habits.setSource(() -> index.size());
     }
     
-    // Управление привычками
+    // Управление привычками. Повторное добавление той же привычки ничего не меняет,
+    // другая привычка с занятым идентификатором получает новый идентификатор.
     public void addHabit(Habit habit) {
-        habits.add(habit);
+        synchronized (indexLock) {
+            if (!claimId(habit)) {
+                return;
+            }
+            
+            // Запись о добавлении попадает в журнал раньше, чем привычку увидят другие потоки
+            journalAdded(habit);
+            
+            synchronized (statistics) {
+                insertHabit(index, habit);
+                statistics.habitAdded(habit, index.get(habit.getId()).position);
+            }
+        }
+        metrics.habitsAdded.increment();
+        
+        for (HabitListener listener : listeners) {
+            listener.habitAdded(habit);
+        }
+    }
+    
+    // Импорт: добавить сразу много привычек с готовой историей. Уже добавленные привычки
+    // пропускаются, при совпадении идентификатора с другой привычкой выдается новый.
+    // Вместо записи каждого отмеченного дня в журнал набор сразу сворачивается в снимок;
+    // метод возвращается, когда снимок записан на диск.
+    public void importHabits(Collection<Habit> habits) {
+        List<Habit> added = new ArrayList<>(habits.size());
+        synchronized (indexLock) {
+            synchronized (statistics) {
+                for (Habit habit : habits) {
+                    if (claimId(habit) && insertHabit(index, habit)) {
+                        added.add(habit);
+                        statistics.habitAdded(habit, index.get(habit.getId()).position);
+                    }
+                }
+            }
+        }
+        metrics.habitsAdded.add(added.size());
+        compact();
+        
+        for (Habit habit : added) {
+            for (HabitListener listener : listeners) {
+                listener.habitAdded(habit);
+            }
+        }
+    }
+    
+    // Записи о добавлении привычки и ее уже отмеченных днях
+    private void journalAdded(Habit habit) {
+        HabitJournal.Record record = journalRecord(HabitJournal.OP_ADD, habit);
+        record.description = habit.getDescription();
+        record.frequency = habit.getFrequency();
+        journal.append(record);
+        LocalDate createdDate = habit.getCreatedDate();
+        habit.forEachCompletedDate(offset ->
+            journal.append(completionRecord(HabitJournal.OP_MARK, habit, createdDate.plusDays(offset))));
     }
     
     public void removeHabit(Habit habit) {
-        habits.remove(habit);
+        HabitIndex.Entry entry;
+        synchronized (indexLock) {
+            entry = index.get(habit.getId());
+            if (entry == null) {
+                return;
+            }
+            journal.append(journalRecord(HabitJournal.OP_REMOVE, entry.habit));
+            
+            synchronized (statistics) {
+                index.delete(entry);
+                statistics.habitRemoved(entry.habit);
+            }
+        }
+        metrics.habitsRemoved.increment();
+        
+        for (HabitListener listener : listeners) {
+            listener.habitRemoved(entry.habit);
+        }
+    }
+    
+    // Отметка выполнения через менеджер, чтобы изменение попало в журнал.
+    // Отмечается привычка с тем же идентификатором, которая сейчас в менеджере.
+    public void markCompleted(Habit habit, LocalDate date) {
+        Habit changed = changeCompletion(habit, date, true);
+        if (changed != null) {
+            metrics.completionsMarked.increment();
+            completionChanged(changed, date);
+        }
+    }
+    
+    public void unmarkCompleted(Habit habit, LocalDate date) {
+        Habit changed = changeCompletion(habit, date, false);
+        if (changed != null) {
+            metrics.completionsUnmarked.increment();
+            completionChanged(changed, date);
+        }
+    }
+    
+    // Изменить отметку под монитором привычки, чтобы проверка, изменение и запись
+    // в журнал шли одна за другой. Возвращает измененную привычку или null.
+    private Habit changeCompletion(Habit habit, LocalDate date, boolean completed) {
+        while (true) {
+            Habit current = index.habit(habit.getId());
+            if (current == null) {
+                return null;
+            }
+            synchronized (current) {
+                // Пока ждали монитор, привычку могли заменить через updateHabit
+                if (index.habit(current.getId()) != current) {
+                    continue;
+                }
+                if (current.isCompletedOnDate(date) == completed) {
+                    return null;
+                }
+                if (completed) {
+                    current.markCompleted(date);
+                } else {
+                    current.unmarkCompleted(date);
+                }
+                journal.append(completionRecord(completed ? HabitJournal.OP_MARK : HabitJournal.OP_UNMARK, current, date));
+                return current;
+            }
+        }
+    }
+    
+    private void completionChanged(Habit habit, LocalDate date) {
+        changedHabits.add(habit.getId());
+        for (HabitListener listener : listeners) {
+            listener.completionChanged(habit, date);
+        }
     }
     
     public void updateHabit(Habit oldHabit, Habit newHabit) {
-        int index = habits.indexOf(oldHabit);
-        if (index != -1) {
-            // Сохраняем историю выполнения и дату создания
-            newHabit = new Habit(
-                newHabit.getName(),
-                newHabit.getDescription(),
-                newHabit.getFrequency(),
-                oldHabit.getCompletedDates(),
-                oldHabit.getCreatedDate()
-            );
-            habits.set(index, newHabit);
+        synchronized (indexLock) {
+            HabitIndex.Entry entry = index.get(oldHabit.getId());
+            if (entry == null) {
+                return;
+            }
+            oldHabit = entry.habit;
+            // Монитор старой привычки держится до замены в индексе, чтобы отметки,
+            // сделанные во время копирования истории, не потерялись
+            synchronized (oldHabit) {
+                // Сохраняем историю выполнения и дату создания
+                newHabit = new Habit(
+                    oldHabit.getId(),
+                    newHabit.getName(),
+                    newHabit.getDescription(),
+                    newHabit.getFrequency(),
+                    oldHabit.getCreatedDate(),
+                    oldHabit.getHistory().copy()
+                );
+                newHabit.useClock(dayClock);
+                
+                HabitJournal.Record record = journalRecord(HabitJournal.OP_UPDATE, oldHabit);
+                record.newName = newHabit.getName();
+                record.description = newHabit.getDescription();
+                record.frequency = newHabit.getFrequency();
+                journal.append(record);
+                
+                index.replace(entry, newHabit);
+            }
+            synchronized (statistics) {
+                statistics.habitRemoved(oldHabit);
+                statistics.habitAdded(newHabit, entry.position);
+            }
+        }
+        metrics.habitsUpdated.increment();
+        
+        for (HabitListener listener : listeners) {
+            listener.habitUpdated(oldHabit, newHabit);
         }
     }
     
+    public void addHabitListener(HabitListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeHabitListener(HabitListener listener) {
+        listeners.remove(listener);
+    }
+    
+    // Список только для чтения: один и тот же до следующего добавления, удаления
+    // или замены привычки, после них строится заново при первом обращении.
+    // Последующие изменения менеджера в нем не видны.
     public List<Habit> getHabits() {
-        return new ArrayList<>(habits);
+        return index.habits();
     }
     
+    // Привычки индексируются по названию на момент добавления или updateHabit,
+    // поэтому переименовывать добавленную привычку нужно через updateHabit
     public Habit getHabitByName(String name) {
-        return habits.stream()
-                .filter(habit -> habit.getName().equals(name))
-                .findFirst()
-                .orElse(null);
+        NavigableMap<Long, Habit> sameName = index.withName(name);
+        Map.Entry<Long, Habit> first = sameName != null ? sameName.firstEntry() : null;
+        return first != null ? first.getValue() : null;
+    }
+    
+    public Habit getHabitById(long id) {
+        return index.habit(id);
+    }
+    
+    public List<Habit> getHabitsWithFrequency(String frequency) {
+        NavigableMap<Long, Habit> sameFrequency = index.withFrequency(frequency);
+        return sameFrequency != null ? new ArrayList<>(sameFrequency.values()) : new ArrayList<>();
     }
     
     // Статистические методы
     public int getTotalHabits() {
-        return habits.size();
+        return index.size();
     }
     
+    // Сводные значения читаются из поддерживаемой статистики. Отметки, сделанные
+    // напрямую через Habit, а не через менеджер, в ней не учитываются.
     public int getCompletedTodayCount() {
-        return (int) habits.stream()
-                .filter(Habit::isCompletedToday)
-                .count();
+        synchronized (statistics) {
+            return currentStatistics().getCompletedTodayCount();
+        }
     }
     
     public double getOverallSuccessRate() {
-        if (habits.isEmpty()) {
-            return 0.0;
+        synchronized (statistics) {
+            return currentStatistics().getOverallSuccessRate();
         }
-        
-        double totalPercentage = habits.stream()
-                .mapToDouble(Habit::getSuccessPercentage)
-                .sum();
-        
-        return totalPercentage / habits.size();
     }
     
     public Habit getBestPerformingHabit() {
-        return habits.stream()
-                .max(Comparator.comparingDouble(Habit::getSuccessPercentage))
-                .orElse(null);
+        synchronized (statistics) {
+            return currentStatistics().getBestPerformingHabit();
+        }
     }
     
     public Habit getWorstPerformingHabit() {
-        return habits.stream()
-                .min(Comparator.comparingDouble(Habit::getSuccessPercentage))
-                .orElse(null);
+        synchronized (statistics) {
+            return currentStatistics().getWorstPerformingHabit();
+        }
     }
     
     public int getLongestCurrentStreak() {
-        return habits.stream()
-                .mapToInt(Habit::getCurrentStreak)
-                .max()
-                .orElse(0);
+        synchronized (statistics) {
+            return currentStatistics().getLongestCurrentStreak();
+        }
+    }
+    
+    // Вся статистика на день asOf за один параллельный проход по привычкам.
+    // Значения каждой привычки снимаются под ее монитором, поэтому параллельные
+    // отметки не дают смеси старого и нового состояния одной привычки.
+    public StatisticsSnapshot computeSnapshot(LocalDate asOf) {
+        long start = System.nanoTime();
+        List<StatisticsSnapshot.HabitSummary> summaries = getHabits().parallelStream()
+                .map(habit -> new StatisticsSnapshot.HabitSummary(habit, asOf))
+                .collect(Collectors.toList());
+        StatisticsSnapshot snapshot = new StatisticsSnapshot(asOf, summaries);
+        metrics.statisticsSnapshot.record(System.nanoTime() - start);
+        return snapshot;
+    }
+    
+    // Значения одной привычки на день asOf, например для ячейки календаря
+    public StatisticsSnapshot.HabitSummary computeSummary(Habit habit, LocalDate asOf) {
+        return new StatisticsSnapshot.HabitSummary(habit, asOf);
+    }
+    
+    // Метрики этого менеджера; интерфейс записывает в них и свои замеры
+    public HabitMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public DayClock getDayClock() {
+        return dayClock;
+    }
+    
+    // Подменить источник текущего дня, например закрепить дату в тестах
+    public void setDayClock(DayClock dayClock) {
+        synchronized (indexLock) {
+            this.dayClock = dayClock;
+            for (HabitIndex.Entry entry : index.entries()) {
+                entry.habit.useClock(dayClock);
+            }
+            synchronized (statistics) {
+                statistics.invalidate();
+            }
+        }
     }
     
     public Map<String, Integer> getHabitsByFrequency() {
-        Map<String, Integer> frequencyMap = new HashMap<>();
+        return index.frequencyCounts();
+    }
+    
+    // Обработчик ошибок сохранения и загрузки. Вызывается из фонового потока,
+    // поэтому интерфейс должен сам перейти в свой поток.
+    public void setErrorHandler(Consumer<IOException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+    
+    // Формат снимка: habits.json или двоичный habits.bin. Снимок в другом формате
+    // читается при загрузке и переписывается в выбранный при первой компактизации.
+    public void setStorageFormat(StorageFormat storageFormat) {
+        this.storageFormat = storageFormat;
+    }
+    
+    public StorageFormat getStorageFormat() {
+        return storageFormat;
+    }
+    
+    // Ленивая загрузка: из двоичного снимка сразу читаются только метаданные и сводка,
+    // история каждой привычки разбирается при первом обращении к ней. Экономится разбор
+    // и память в куче, но не чтение с диска: контрольная сумма снимка проверяется целиком.
+    public void setLazyHistoryLoading(boolean lazyHistoryLoading) {
+        this.lazyHistoryLoading = lazyHistoryLoading;
+    }
+    
+    // Выгрузить из памяти истории, которые не менялись после загрузки.
+    // Они будут прочитаны из снимка снова при следующем обращении.
+    public int unloadHistories() {
+        int unloaded = 0;
+        for (Habit habit : getHabits()) {
+            if (habit.unloadHistory()) {
+                unloaded++;
+            }
+        }
+        return unloaded;
+    }
+    
+    // Форматирование habits.json с отступами. По умолчанию выключено: файл меньше и пишется быстрее.
+    public void setPrettyPrinting(boolean prettyPrinting) {
+        this.jsonCodec = new HabitJsonCodec(prettyPrinting);
+    }
+    
+    // Сохранение и загрузка данных.
+    // Изменения дописываются в журнал в фоновом потоке: несколько вызовов подряд
+    // сливаются в одну запись на диск. Когда журнал становится слишком большим,
+    // он сворачивается в полный снимок.
+    public void saveHabits() {
+        if (journal.size() >= COMPACTION_THRESHOLD_BYTES && compacting.compareAndSet(false, true)) {
+            compactAsync();
+            return;
+        }
         
-        for (Habit habit : habits) {
-            String frequency = habit.getFrequency();
-            frequencyMap.put(frequency, frequencyMap.getOrDefault(frequency, 0) + 1);
+        if (writeScheduled.compareAndSet(false, true)) {
+            submitPersistence(() -> {
+                writeScheduled.set(false);
+                try {
+                    syncJournal();
+                } catch (IOException e) {
+                    reportError("Ошибка при сохранении данных", e);
+                }
+            });
+        }
+    }
+    
+    // Сразу свернуть журнал в полный снимок текущего состояния и дождаться записи на диск,
+    // например перед копированием каталога данных. В обычной работе журнал сворачивается
+    // сам из saveHabits(), вызывать compact() для сохранения не нужно.
+    public void compact() {
+        // Идущая компактизация могла снять состояние до вызова: дожидаемся ее и начинаем свою
+        while (!compacting.compareAndSet(false, true)) {
+            flush();
+        }
+        compactAsync();
+        flush();
+    }
+    
+    // Дождаться записи всех изменений, сделанных до вызова
+    public void flush() {
+        try {
+            persistenceExecutor.submit(() -> {
+                try {
+                    syncJournal();
+                } catch (IOException e) {
+                    reportError("Ошибка при сохранении данных", e);
+                }
+            }).get();
+        } catch (RejectedExecutionException e) {
+            // Менеджер уже закрыт, все изменения записаны в close()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            reportError("Ошибка при сохранении данных", new IOException(e.getCause()));
         }
+    }
+    
+    // Загруженные привычки собираются в новом индексе и публикуются вместе
+    public void loadHabits() {
+        long start = System.nanoTime();
+        synchronized (indexLock) {
+            loadIndex();
+        }
+        metrics.load.record(System.nanoTime() - start);
         
-        return frequencyMap;
+        for (HabitListener listener : listeners) {
+            listener.habitsReloaded();
+        }
     }
     
-    // Сохранение и загрузка данных
-    public void saveHabits() {
+    private void loadIndex() {
+        HabitIndex loadedIndex = new HabitIndex();
+        boolean migrateIds = false;
+        
+        StorageFormat format = storageFormat;
+        StorageFormat sourceFormat = null;
+        Path dataFile = null;
         try {
-            List<HabitData> habitDataList = new ArrayList<>();
-            
-            for (Habit habit : habits) {
-                HabitData data = new HabitData();
-                data.name = habit.getName();
-                data.description = habit.getDescription();
-                data.frequency = habit.getFrequency();
-                data.createdDate = habit.getCreatedDate();
-                data.completedDates = new ArrayList<>(habit.getCompletedDates());
-                
-                habitDataList.add(data);
+            dataFile = format.findSnapshot(dataDirectory);
+            sourceFormat = format;
+            if (dataFile == null) {
+                dataFile = format.other().findSnapshot(dataDirectory);
+                sourceFormat = dataFile != null ? format.other() : null;
             }
-            
-            try (FileWriter writer = new FileWriter(DATA_FILE)) {
-                gson.toJson(habitDataList, writer);
+        } catch (IOException e) {
+            reportError("Ошибка при загрузке данных", e);
+        }
+        
+        if (dataFile != null) {
+            try {
+                List<Habit> loaded = sourceFormat == StorageFormat.BINARY
+                    ? SnapshotFile.map(dataFile, buffer -> binaryCodec.read(buffer, lazyHistoryLoading))
+                    : SnapshotFile.read(dataFile, this::readSnapshot, this::readLegacySnapshot);
+                migrateIds = assignMissingIds(loaded);
+                for (Habit habit : loaded) {
+                    insertHabit(loadedIndex, habit);
+                }
+            } catch (SnapshotFile.CorruptedException e) {
+                // Поврежденный снимок откладываем в сторону, чтобы следующая
+                // компактизация не затерла то, что еще можно восстановить вручную
+                moveAsideCorrupted(dataFile);
+                sourceFormat = null;
+                reportError("Ошибка при загрузке данных", e);
+            } catch (IOException e) {
+                reportError("Ошибка при загрузке данных", e);
+            }
+        }
+        
+        try {
+            int[] rejected = new int[1];
+            int skipped = journal.replay(record -> {
+                if (!applyJournalRecord(loadedIndex, record)) {
+                    rejected[0]++;
+                }
+            });
+            if (skipped > 0) {
+                reportError("Ошибка при чтении журнала",
+                    new IOException("пропущено поврежденных записей: " + skipped));
+            }
+            if (rejected[0] > 0) {
+                reportError("Ошибка при чтении журнала",
+                    new IOException("пропущено неизвестных или неполных записей: " + rejected[0]));
             }
-            
         } catch (IOException e) {
-            System.err.println("Ошибка при сохранении данных: " + e.getMessage());
+            reportError("Ошибка при чтении журнала", e);
+        }
+        
+        synchronized (statistics) {
+            index = loadedIndex;
+            statistics.invalidate();
+        }
+        
+        // Снимок в другом формате, старый habits.json без идентификаторов и слишком длинный журнал
+        // сразу сворачиваем в новый снимок
+        boolean convert = sourceFormat != null && sourceFormat != format;
+        if ((convert || migrateIds || journal.size() >= COMPACTION_THRESHOLD_BYTES) && compacting.compareAndSet(false, true)) {
+            compactAsync();
         }
     }
     
-    public void loadHabits() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return;
+    // Записать оставшиеся изменения, дождаться фоновых операций и закрыть журнал.
+    // Без вызова close() изменения, еще не записанные фоновым потоком, теряются при
+    // завершении JVM. Повторный вызов ждет завершения первого и ничего не делает.
+    public void close() {
+        synchronized (closeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flush();
+            persistenceExecutor.shutdown();
+            try {
+                persistenceExecutor.awaitTermination(30, TimeUnit.SECONDS);
+                journal.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                reportError("Ошибка при закрытии журнала", e);
+            }
         }
-        
-        try (FileReader reader = new FileReader(DATA_FILE)) {
-            Type listType = new TypeToken<List<HabitData>>(){}.getType();
-            List<HabitData> habitDataList = gson.fromJson(reader, listType);
-            
-            if (habitDataList != null) {
-                habits.clear();
-                
-                for (HabitData data : habitDataList) {
-                    Set<LocalDate> completedDates = new HashSet<>(data.completedDates);
-                    Habit habit = new Habit(
-                        data.name,
-                        data.description,
-                        data.frequency,
-                        completedDates,
-                        data.createdDate
-                    );
-                    habits.add(habit);
+    }
+    
+    // Свернуть журнал в снимок в потоке сохранения. Накопленные записи и состояние
+    // фиксируются там же, сразу перед переносом журнала: все, что уже записано в старый
+    // журнал, попадает и в снимок, а более поздние записи идут в новый журнал.
+    // Записи забираются под indexLock раньше, чем снимается состояние: добавление,
+    // удаление и замена пишут запись и публикуют изменение под тем же замком, а отметка
+    // пишет запись после изменения привычки. Поэтому каждая забранная запись уже видна
+    // в снимке; изменение между этими шагами попадет и в снимок, и в новый журнал,
+    // а повторное применение записей журнала безопасно.
+    private void compactAsync() {
+        submitPersistence(() -> {
+            try {
+                String chunk;
+                List<Habit> snapshot;
+                synchronized (indexLock) {
+                    chunk = journal.drainPending();
+                    snapshot = captureSnapshot();
+                }
+                writeJournal(chunk);
+                journal.rotate();
+                Path written = writeSnapshot(snapshot);
+                journal.discardRotated();
+                // Прежние поколения и снимок другого формата больше не нужны
+                for (StorageFormat format : StorageFormat.values()) {
+                    format.deleteSnapshots(dataDirectory, written);
+                }
+            } catch (IOException e) {
+                reportError("Ошибка при компактизации журнала", e);
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+    
+    private void syncJournal() throws IOException {
+        writeJournal(journal.drainPending());
+    }
+    
+    // Дописать записи в журнал на диске; пустые записи в метрики не попадают
+    private void writeJournal(String chunk) throws IOException {
+        long start = System.nanoTime();
+        int bytes = journal.write(chunk);
+        if (bytes > 0) {
+            metrics.journalSync.record(System.nanoTime() - start);
+            metrics.journalBytes.add(bytes);
+        }
+    }
+    
+    private void submitPersistence(Runnable task) {
+        try {
+            persistenceExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            reportError("Ошибка при сохранении данных", new IOException("хранилище уже закрыто", e));
+        }
+    }
+    
+    private void reportError(String message, IOException e) {
+        errorHandler.accept(new IOException(message + ": " + e.getMessage(), e));
+    }
+    
+    // Копии привычек для записи снимка и вычислений в фоне: метаданные и массивы
+    // истории без перевода в даты.
+    List<Habit> captureSnapshot() {
+        HabitIndex current = index;
+        List<Habit> snapshot = new ArrayList<>(current.size());
+        for (HabitIndex.Entry entry : current.entries()) {
+            snapshot.add(entry.habit.snapshotCopy());
+        }
+        return snapshot;
+    }
+    
+    // Записать снимок и вернуть его файл
+    private Path writeSnapshot(List<Habit> snapshot) throws IOException {
+        long start = System.nanoTime();
+        StorageFormat format = storageFormat;
+        Path file = format.nextSnapshot(dataDirectory);
+        long bytes;
+        if (format == StorageFormat.BINARY) {
+            bytes = SnapshotFile.write(file, out -> binaryCodec.write(snapshot, out));
+        } else {
+            HabitJsonCodec codec = jsonCodec;
+            bytes = SnapshotFile.write(file, out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                codec.write(snapshot, writer);
+                writer.flush();
+            });
+        }
+        metrics.snapshotWrite.record(System.nanoTime() - start);
+        metrics.snapshotBytes.add(bytes);
+        return file;
+    }
+    
+    private List<Habit> readSnapshot(InputStream in) throws IOException {
+        return jsonCodec.read(new InputStreamReader(in, StandardCharsets.UTF_8), dayClock);
+    }
+    
+    // habits.json без контрольной суммы. Первые версии писали его через FileWriter
+    // в кодировке системы (на русской Windows - windows-1251), поздние - в UTF-8.
+    // Если файл не разбирается как UTF-8, он читается в кодировке системы.
+    private List<Habit> readLegacySnapshot(InputStream in) throws IOException {
+        byte[] bytes = in.readAllBytes();
+        String text;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(bytes))
+                .toString();
+        } catch (CharacterCodingException e) {
+            text = new String(bytes, Charset.defaultCharset());
+        }
+        return jsonCodec.read(new StringReader(text), dayClock);
+    }
+    
+    // Каждая копия получает свое имя со временем переноса: повторное повреждение
+    // не должно затереть предыдущую копию, она может быть единственной
+    private void moveAsideCorrupted(Path dataFile) {
+        String prefix = dataFile.getFileName() + ".corrupted-"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        try {
+            for (int attempt = 0; ; attempt++) {
+                Path target = dataFile.resolveSibling(attempt == 0 ? prefix : prefix + "-" + attempt);
+                try {
+                    Files.move(dataFile, target);
+                    SnapshotFile.syncDirectory(target);
+                    return;
+                } catch (FileAlreadyExistsException e) {
+                    // Копия с таким временем уже есть, берем следующий номер
                 }
             }
-            
         } catch (IOException e) {
-            System.err.println("Ошибка при загрузке данных: " + e.getMessage());
+            reportError("Не удалось сохранить копию поврежденного файла", e);
         }
     }
     
-    // Вспомогательные классы для сериализации
-    private static class HabitData {
-        String name;
-        String description;
-        String frequency;
-        LocalDate createdDate;
-        List<LocalDate> completedDates;
+    // Воспроизведение записи журнала поверх загруженного снимка.
+    // Записи идемпотентны, поэтому повторное применение уже свернутых изменений безопасно.
+    // Возвращает false для неизвестной записи или записи без нужных полей: она пропускается.
+    private boolean applyJournalRecord(HabitIndex target, HabitJournal.Record record) {
+        try {
+            return applyJournalRecordChecked(target, record);
+        } catch (DateTimeException e) {
+            return false;
+        }
     }
     
-    // Адаптер для сериализации LocalDate
-    private static class LocalDateAdapter implements JsonSerializer<LocalDate>, JsonDeserializer<LocalDate> {
-        private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+    private boolean applyJournalRecordChecked(HabitIndex target, HabitJournal.Record record) {
+        if (record.id == 0 || record.created == null) {
+            return false;
+        }
+        boolean completion = HabitJournal.OP_MARK.equals(record.op) || HabitJournal.OP_UNMARK.equals(record.op);
+        if (completion && record.date == null) {
+            return false;
+        }
+        LocalDate createdDate = LocalDate.parse(record.created);
+        Habit habit = target.habit(record.id);
         
-        @Override
-        public JsonElement serialize(LocalDate date, Type typeOfSrc, JsonSerializationContext context) {
-            return new JsonPrimitive(formatter.format(date));
+        switch (record.op) {
+            case HabitJournal.OP_ADD:
+                if (habit == null) {
+                    Habit.reserveIds(record.id);
+                    insertHabit(target, new Habit(record.id, record.name, record.description, record.frequency,
+                        createdDate, (CompletionHistory) null));
+                }
+                break;
+            case HabitJournal.OP_REMOVE:
+                if (habit != null) {
+                    target.delete(target.get(habit.getId()));
+                }
+                break;
+            case HabitJournal.OP_UPDATE:
+                if (habit != null) {
+                    Habit updated = new Habit(
+                        habit.getId(),
+                        record.newName,
+                        record.description,
+                        record.frequency,
+                        createdDate,
+                        habit.getHistory()
+                    );
+                    updated.useClock(dayClock);
+                    target.replace(target.get(habit.getId()), updated);
+                }
+                break;
+            case HabitJournal.OP_MARK:
+                if (habit != null) {
+                    habit.markCompleted(LocalDate.parse(record.date));
+                }
+                break;
+            case HabitJournal.OP_UNMARK:
+                if (habit != null) {
+                    habit.unmarkCompleted(LocalDate.parse(record.date));
+                }
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+    
+    // Статистика на сегодня. После загрузки и при смене дня строится заново за один проход,
+    // иначе пересчитываются только привычки с измененными отметками.
+    // Вызывается под монитором statistics.
+    private HabitStatistics currentStatistics() {
+        LocalDate today = dayClock.today();
+        if (statistics.isValidFor(today)) {
+            // Отметка после удаления из набора снова пометит привычку до следующего чтения
+            for (Iterator<Long> changed = changedHabits.iterator(); changed.hasNext(); ) {
+                long id = changed.next();
+                changed.remove();
+                statistics.habitChanged(id);
+            }
+        } else {
+            long start = System.nanoTime();
+            changedHabits.clear();
+            statistics.reset(today);
+            for (HabitIndex.Entry entry : index.entries()) {
+                statistics.habitAdded(entry.habit, entry.position);
+            }
+            metrics.statisticsRebuild.record(System.nanoTime() - start);
+        }
+        return statistics;
+    }
+    
+    // Работа с индексами    
+    // Позиция привычки в списке для упорядочивания отфильтрованных списков, -1 если ее нет
+    long positionOf(Habit habit) {
+        HabitIndex.Entry entry = index.get(habit.getId());
+        return entry != null ? entry.position : -1;
+    }
+    
+    // Привычкам из файла старого формата назначаются идентификаторы после самого
+    // большого из загруженных, в порядке файла. Назначение детерминировано, поэтому
+    // записи журнала с этими идентификаторами сходятся, даже если новый снимок
+    // не успел записаться.
+    private static boolean assignMissingIds(List<Habit> loaded) {
+        long maxId = 0;
+        for (Habit habit : loaded) {
+            maxId = Math.max(maxId, habit.getId());
         }
+        Habit.reserveIds(maxId);
         
-        @Override
-        public LocalDate deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) {
-            return LocalDate.parse(json.getAsString(), formatter);
+        boolean assigned = false;
+        for (Habit habit : loaded) {
+            if (habit.getId() == 0) {
+                habit.assignId(++maxId);
+                assigned = true;
+            }
+        }
+        return assigned;
+    }
+    
+    // Вызывается под indexLock. false, если эта же привычка уже добавлена.
+    private boolean claimId(Habit habit) {
+        HabitIndex.Entry entry;
+        while ((entry = index.get(habit.getId())) != null) {
+            if (entry.habit == habit) {
+                return false;
+            }
+            habit.assignFreshId();
+        }
+        return true;
+    }
+    
+    private boolean insertHabit(HabitIndex target, Habit habit) {
+        if (target.get(habit.getId()) != null) {
+            return false;
         }
+        habit.useClock(dayClock);
+        target.insert(habit);
+        return true;
+    }
+    
+    private static HabitJournal.Record journalRecord(String op, Habit habit) {
+        HabitJournal.Record record = new HabitJournal.Record();
+        record.op = op;
+        record.id = habit.getId();
+        record.name = habit.getName();
+        record.created = habit.getCreatedDate().toString();
+        return record;
+    }
+    
+    private static HabitJournal.Record completionRecord(String op, Habit habit, LocalDate date) {
+        HabitJournal.Record record = journalRecord(op, habit);
+        record.date = date.toString();
+        return record;
     }
 }
\ No newline at end of file
@@ -0,0 +1,396 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+// Метрики менеджера и интерфейса: таймеры, счетчики и текущие значения.
+// Запись - это несколько операций LongAdder без выделения памяти и блокировок,
+// поэтому метрики включены всегда. Значения читаются через JMX (HabitMetrics в
+// домене com.example) и, если заданы системные свойства, периодически пишутся
+// в CSV-файл или в лог:
+//
+//     -Dhabits.metrics.file=metrics.csv    строка с текущими значениями на каждый интервал
+//     -Dhabits.metrics.log=true            то же одной строкой в System.err
+//     -Dhabits.metrics.interval=60         интервал в секундах
+public class HabitMetrics {
+    public static final String FILE_PROPERTY = "habits.metrics.file";
+    public static final String LOG_PROPERTY = "habits.metrics.log";
+    public static final String INTERVAL_PROPERTY = "habits.metrics.interval";
+    public static final String OBJECT_NAME = "com.example:type=HabitMetrics";
+
+    private static final long DEFAULT_INTERVAL_SECONDS = 60;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final List<Metric> metrics = new ArrayList<>();
+
+    // Хранение
+    final Timer load = add(new Timer("load"));
+    final Timer snapshotWrite = add(new Timer("snapshotWrite"));
+    final Counter snapshotBytes = add(new Counter("snapshotBytes"));
+    final Timer journalSync = add(new Timer("journalSync"));
+    final Counter journalBytes = add(new Counter("journalBytes"));
+
+    // Статистика: пересборка сводной статистики менеджера и полный снимок по привычкам
+    final Timer statisticsRebuild = add(new Timer("statisticsRebuild"));
+    final Timer statisticsSnapshot = add(new Timer("statisticsSnapshot"));
+
+    // Изменения привычек
+    final Counter habitsAdded = add(new Counter("habitsAdded"));
+    final Counter habitsRemoved = add(new Counter("habitsRemoved"));
+    final Counter habitsUpdated = add(new Counter("habitsUpdated"));
+    final Counter completionsMarked = add(new Counter("completionsMarked"));
+    final Counter completionsUnmarked = add(new Counter("completionsUnmarked"));
+    final Gauge habits = add(new Gauge("habits"));
+
+    // Интерфейс: время до конца раскладки после обновления и количество узлов
+    final Timer calendarUpdate = add(new Timer("calendarUpdate"));
+    final Gauge calendarNodes = add(new Gauge("calendarNodes"));
+    final Timer statisticsWindow = add(new Timer("statisticsWindow"));
+    final Gauge statisticsWindowNodes = add(new Gauge("statisticsWindowNodes"));
+
+    private ScheduledExecutorService reporter;
+    private ObjectName registeredName;
+
+    private <T extends Metric> T add(T metric) {
+        metrics.add(metric);
+        return metric;
+    }
+
+    // Текущие значения по именам в постоянном порядке: для таймера - количество,
+    // суммарное, среднее и наибольшее время в миллисекундах, для счетчика - значение
+    // и скорость в секунду с предыдущего отчета (или с начала работы)
+    public Map<String, Number> values() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (Metric metric : metrics) {
+            metric.collect(values, now);
+        }
+        return values;
+    }
+
+    public void reset() {
+        long now = System.nanoTime();
+        for (Metric metric : metrics) {
+            metric.reset(now);
+        }
+    }
+
+    // Зарегистрировать метрики в JMX. Ошибка регистрации не мешает работе приложения.
+    public synchronized void registerMBean() {
+        if (registeredName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), name);
+            registeredName = name;
+        } catch (JMException e) {
+            System.err.println("Не удалось зарегистрировать метрики в JMX: " + e.getMessage());
+        }
+    }
+
+    // Периодический отчет по системным свойствам; без них отчет не запускается
+    public void startReportingFromSystemProperties() {
+        String file = System.getProperty(FILE_PROPERTY);
+        boolean log = Boolean.getBoolean(LOG_PROPERTY);
+        if (file == null && !log) {
+            return;
+        }
+        long seconds = Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL_SECONDS);
+        startReporting(Duration.ofSeconds(Math.max(1, seconds)), file != null ? Paths.get(file) : null, log);
+    }
+
+    // Каждые interval писать значения строкой в csvFile (если задан) и в System.err (если log)
+    public synchronized void startReporting(Duration interval, Path csvFile, boolean log) {
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "habit-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        reporter.scheduleAtFixedRate(() -> report(csvFile, log), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    // Остановить отчет и снять регистрацию в JMX
+    public synchronized void close() {
+        stopReporting();
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (JMException e) {
+                System.err.println("Не удалось снять регистрацию метрик в JMX: " + e.getMessage());
+            }
+            registeredName = null;
+        }
+    }
+
+    // Строка отчета; после нее скорости счетчиков считаются заново
+    private void report(Path csvFile, boolean log) {
+        Map<String, Number> values = values();
+        String time = LocalDateTime.now().format(TIME_FORMAT);
+        if (csvFile != null) {
+            try {
+                writeCsv(csvFile, time, values);
+            } catch (IOException e) {
+                System.err.println("Ошибка при записи метрик в " + csvFile + ": " + e.getMessage());
+            }
+        }
+        if (log) {
+            StringBuilder line = new StringBuilder("Метрики ").append(time);
+            for (Map.Entry<String, Number> entry : values.entrySet()) {
+                line.append(' ').append(entry.getKey()).append('=').append(format(entry.getValue()));
+            }
+            System.err.println(line);
+        }
+
+        long now = System.nanoTime();
+        for (Metric metric : metrics) {
+            metric.sample(now);
+        }
+    }
+
+    // Заголовок пишется, если файла еще нет или он пустой
+    private static void writeCsv(Path csvFile, String time, Map<String, Number> values) throws IOException {
+        boolean header = !Files.exists(csvFile) || Files.size(csvFile) == 0;
+        try (Writer writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (header) {
+                writer.write("time");
+                for (String name : values.keySet()) {
+                    writer.write(',');
+                    writer.write(name);
+                }
+                writer.write('\n');
+            }
+            writer.write(time);
+            for (Number value : values.values()) {
+                writer.write(',');
+                writer.write(format(value));
+            }
+            writer.write('\n');
+        }
+    }
+
+    private static String format(Number value) {
+        return value instanceof Double ? String.format(Locale.ROOT, "%.3f", value.doubleValue()) : value.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    abstract static class Metric {
+        final String name;
+
+        Metric(String name) {
+            this.name = name;
+        }
+
+        abstract void collect(Map<String, Number> values, long now);
+
+        abstract void reset(long now);
+
+        // Отметка для скорости изменения: вызывается после каждого отчета
+        void sample(long now) {
+        }
+    }
+
+    // Продолжительность операции в наносекундах:
+    //     long start = System.nanoTime(); ...; timer.record(System.nanoTime() - start);
+    static final class Timer extends Metric {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Timer(String name) {
+            super(name);
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        @Override
+        void collect(Map<String, Number> values, long now) {
+            long n = count.sum();
+            long total = totalNanos.sum();
+            values.put(name + "Count", n);
+            values.put(name + "TotalMillis", millis(total));
+            values.put(name + "MeanMillis", n > 0 ? millis(total) / n : 0.0);
+            values.put(name + "MaxMillis", millis(maxNanos.get()));
+        }
+
+        @Override
+        void reset(long now) {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+    }
+
+    static final class Counter extends Metric {
+        private final LongAdder value = new LongAdder();
+        // Значение и время предыдущего отчета для скорости в секунду
+        private volatile long sampledValue;
+        private volatile long sampledNanos = System.nanoTime();
+
+        Counter(String name) {
+            super(name);
+        }
+
+        void increment() {
+            value.increment();
+        }
+
+        void add(long amount) {
+            value.add(amount);
+        }
+
+        @Override
+        void collect(Map<String, Number> values, long now) {
+            long current = value.sum();
+            long elapsed = now - sampledNanos;
+            values.put(name, current);
+            values.put(name + "PerSecond", elapsed > 0 ? (current - sampledValue) * 1e9 / elapsed : 0.0);
+        }
+
+        @Override
+        void reset(long now) {
+            value.reset();
+            sampledValue = 0;
+            sampledNanos = now;
+        }
+
+        @Override
+        void sample(long now) {
+            sampledValue = value.sum();
+            sampledNanos = now;
+        }
+    }
+
+    // Текущее значение: задается через set() или читается из источника при отчете
+    static final class Gauge extends Metric {
+        private volatile long value;
+        private volatile LongSupplier source;
+
+        Gauge(String name) {
+            super(name);
+        }
+
+        void set(long value) {
+            this.value = value;
+        }
+
+        void setSource(LongSupplier source) {
+            this.source = source;
+        }
+
+        @Override
+        void collect(Map<String, Number> values, long now) {
+            LongSupplier current = source;
+            values.put(name, current != null ? current.getAsLong() : value);
+        }
+
+        @Override
+        void reset(long now) {
+            value = 0;
+        }
+    }
+
+    // Метрики в JMX: каждое значение - атрибут только для чтения, операция reset обнуляет все
+    private class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = values().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Метрики доступны только для чтения: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                Number value = values.get(attribute);
+                if (value != null) {
+                    list.add(new Attribute(attribute, value));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            if ("reset".equals(actionName)) {
+                reset();
+                return null;
+            }
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Map.Entry<String, Number> entry : values().entrySet()) {
+                attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                    entry.getKey(), true, false, false));
+            }
+            MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Обнулить все метрики",
+                null, "void", MBeanOperationInfo.ACTION);
+            return new MBeanInfo(HabitMetrics.class.getName(), "Метрики трекера привычек",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] {reset}, null);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Индекс для поиска привычек по подстроке названия: отсортированный массив всех суффиксов
+// названий (suffix array). Подстрока названия - это префикс одного из его суффиксов,
+// поэтому поиск - двоичный поиск первого суффикса с нужным префиксом и проход по соседним.
+// Регистр не учитывается. Индекс перестраивается целиком после изменения набора названий.
+class HabitNameIndex {
+    // Суффикс кодируется как (номер привычки << 16) | смещение в названии
+    private static final int OFFSET_BITS = 16;
+    private static final int MAX_NAME_LENGTH = (1 << OFFSET_BITS) - 1;
+
+    private final List<Habit> habits = new ArrayList<>();
+    private String[] names = new String[0];
+    private long[] suffixes = new long[0];
+    private boolean dirty = true;
+
+    void invalidate() {
+        dirty = true;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void rebuild(List<Habit> source) {
+        habits.clear();
+        habits.addAll(source);
+        names = new String[habits.size()];
+
+        int total = 0;
+        for (int i = 0; i < names.length; i++) {
+            String name = habits.get(i).getName();
+            names[i] = name == null ? "" : name.toLowerCase(Locale.ROOT);
+            total += Math.min(names[i].length(), MAX_NAME_LENGTH);
+        }
+
+        suffixes = new long[total];
+        int next = 0;
+        for (int i = 0; i < names.length; i++) {
+            int length = Math.min(names[i].length(), MAX_NAME_LENGTH);
+            for (int offset = 0; offset < length; offset++) {
+                suffixes[next++] = ((long) i << OFFSET_BITS) | offset;
+            }
+        }
+        sort(0, suffixes.length - 1, 0);
+        dirty = false;
+    }
+
+    // Идентификаторы привычек, в названии которых есть query
+    Set<Long> find(String query) {
+        String key = query.toLowerCase(Locale.ROOT);
+        Set<Long> result = new HashSet<>();
+        for (int i = lowerBound(key); i < suffixes.length && comparePrefix(suffixes[i], key) == 0; i++) {
+            result.add(habits.get(slot(suffixes[i])).getId());
+        }
+        return result;
+    }
+
+    // Первый суффикс, который не меньше key (суффиксы с префиксом key считаются равными ему)
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = suffixes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(suffixes[middle], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int comparePrefix(long suffix, String key) {
+        for (int depth = 0; depth < key.length(); depth++) {
+            int c = charAt(suffix, depth);
+            if (c != key.charAt(depth)) {
+                return c < key.charAt(depth) ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int slot(long suffix) {
+        return (int) (suffix >>> OFFSET_BITS);
+    }
+
+    // Символ суффикса на глубине depth или -1 за концом названия
+    private int charAt(long suffix, int depth) {
+        String name = names[slot(suffix)];
+        int index = (int) (suffix & MAX_NAME_LENGTH) + depth;
+        return index < name.length() ? name.charAt(index) : -1;
+    }
+
+    // Трехпутевая быстрая сортировка строк (Bentley-Sedgewick) по символу на глубине depth
+    private void sort(int low, int high, int depth) {
+        while (low < high) {
+            int lt = low;
+            int gt = high;
+            int pivot = charAt(suffixes[(low + high) >>> 1], depth);
+            int i = low;
+            while (i <= gt) {
+                int c = charAt(suffixes[i], depth);
+                if (c < pivot) {
+                    swap(lt++, i++);
+                } else if (c > pivot) {
+                    swap(i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            sort(low, lt - 1, depth);
+            sort(gt + 1, high, depth);
+            // Равные по текущему символу сортируются по следующему; у закончившихся суффиксов сравнивать нечего
+            if (pivot < 0) {
+                return;
+            }
+            low = lt;
+            high = gt;
+            depth++;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long tmp = suffixes[i];
+        suffixes[i] = suffixes[j];
+        suffixes[j] = tmp;
+    }
+}
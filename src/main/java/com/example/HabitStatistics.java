@@ -0,0 +1,129 @@
+package com.example;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Сводная статистика по всем привычкам, которая поддерживается по событиям
+// добавления, удаления и изменения привычек, а не пересчитывается обходом списка.
+// Значения зависят от текущего дня, поэтому при смене дня (и после загрузки)
+// статистика строится заново при первом обращении.
+class HabitStatistics {
+    private LocalDate day;
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private int completedToday;
+    private double successSum;
+    // Привычки по проценту успеха, внутри одного процента - по позиции в списке.
+    // Лучшая и худшая при равенстве - первая по списку, как у Stream.max/min.
+    private final TreeMap<Double, TreeMap<Long, Habit>> bySuccess = new TreeMap<>();
+    // Количество привычек с каждой длиной текущей серии
+    private final TreeMap<Integer, Integer> streakCounts = new TreeMap<>();
+
+    // Статистика построена для этого дня и ее можно обновлять по событиям
+    boolean isValidFor(LocalDate today) {
+        return today.equals(day);
+    }
+
+    void invalidate() {
+        day = null;
+    }
+
+    void reset(LocalDate today) {
+        day = today;
+        entries.clear();
+        completedToday = 0;
+        successSum = 0;
+        bySuccess.clear();
+        streakCounts.clear();
+    }
+
+    void habitAdded(Habit habit, long position) {
+        if (day == null) {
+            return;
+        }
+        Entry entry = new Entry(habit, position);
+        entries.put(habit.getId(), entry);
+
+        if (entry.completedToday) {
+            completedToday++;
+        }
+        successSum += entry.successPercentage;
+        bySuccess.computeIfAbsent(entry.successPercentage, key -> new TreeMap<>()).put(position, habit);
+        streakCounts.merge(entry.currentStreak, 1, Integer::sum);
+    }
+
+    void habitRemoved(Habit habit) {
+        if (day == null) {
+            return;
+        }
+        Entry entry = entries.remove(habit.getId());
+        if (entry == null) {
+            return;
+        }
+
+        if (entry.completedToday) {
+            completedToday--;
+        }
+        successSum -= entry.successPercentage;
+        TreeMap<Long, Habit> sameSuccess = bySuccess.get(entry.successPercentage);
+        sameSuccess.remove(entry.position);
+        if (sameSuccess.isEmpty()) {
+            bySuccess.remove(entry.successPercentage);
+        }
+        streakCounts.computeIfPresent(entry.currentStreak, (streak, count) -> count == 1 ? null : count - 1);
+    }
+
+    // Отметки привычки изменились: пересчитываем только ее. Значения снимаются с той
+    // привычки, которая учтена в сводке, а не с объекта из события: если привычку уже
+    // заменили через updateHabit, старый объект в сводку не вернется.
+    void habitChanged(long id) {
+        if (day == null) {
+            return;
+        }
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            habitRemoved(entry.habit);
+            habitAdded(entry.habit, entry.position);
+        }
+    }
+
+    int getCompletedTodayCount() {
+        return completedToday;
+    }
+
+    double getOverallSuccessRate() {
+        return entries.isEmpty() ? 0.0 : successSum / entries.size();
+    }
+
+    Habit getBestPerformingHabit() {
+        return bySuccess.isEmpty() ? null : bySuccess.lastEntry().getValue().firstEntry().getValue();
+    }
+
+    Habit getWorstPerformingHabit() {
+        return bySuccess.isEmpty() ? null : bySuccess.firstEntry().getValue().firstEntry().getValue();
+    }
+
+    int getLongestCurrentStreak() {
+        return streakCounts.isEmpty() ? 0 : streakCounts.lastKey();
+    }
+
+    // Значения привычки, которые сейчас учтены в сводке
+    private static class Entry {
+        final Habit habit;
+        final long position;
+        final boolean completedToday;
+        final double successPercentage;
+        final int currentStreak;
+
+        Entry(Habit habit, long position) {
+            this.habit = habit;
+            this.position = position;
+            synchronized (habit) {
+                this.completedToday = habit.isCompletedToday();
+                this.successPercentage = habit.getSuccessPercentage();
+                this.currentStreak = habit.getCurrentStreak();
+            }
+        }
+    }
+}
@@ -1,32 +1,111 @@
 package com.example;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
 
 public class HabitTrackerApp extends Application {
+    private static final String ALL_FREQUENCIES = "Все частоты";
+    
     private HabitManager habitManager;
-    private ObservableList<Habit> displayedHabits;
+    // Все привычки в порядке менеджера -> фильтр -> сортировка -> список на экране
+    private ObservableList<Habit> allHabits;
+    private FilteredList<Habit> filteredHabits;
+    private SortedList<Habit> displayedHabits;
+    // Позиции в менеджере для привычек из allHabits. Запоминаются при попадании в список:
+    // удаленной привычки в менеджере уже нет, а найти ее в allHabits все равно нужно.
+    private final Map<Long, Long> listedPositions = new HashMap<>();
     private ListView<Habit> habitListView;
-    private VBox calendarContainer;
-    private ComboBox<String> filterComboBox;
+    private ObservableList<Habit> calendarHabits;
+    private ListView<Habit> calendarListView;
+    private ComboBox<String> calendarViewComboBox;
+    private ComboBox<CompletionFilter> filterComboBox;
+    private ComboBox<String> frequencyComboBox;
+    private TextField nameFilterField;
+    private Spinner<Integer> streakSpinner;
+    private ComboBox<HabitOrder> orderComboBox;
+    // Поиск по названию: индекс строится по allHabits, совпадения считаются один раз на запрос
+    private final HabitNameIndex nameIndex = new HabitNameIndex();
+    private String nameQuery = "";
+    private Set<Long> nameMatches = Collections.emptySet();
+    // Начало обновления календаря, которое еще не прошло раскладку (0 - такого нет)
+    private long calendarUpdateStarted;
+    
+    // Фильтр по выполнению сегодня
+    private enum CompletionFilter {
+        ALL("Все привычки"),
+        COMPLETED("Выполненные сегодня"),
+        NOT_COMPLETED("Невыполненные сегодня");
+        
+        private final String label;
+        
+        CompletionFilter(String label) {
+            this.label = label;
+        }
+        
+        boolean matches(Habit habit) {
+            switch (this) {
+                case COMPLETED:
+                    return habit.isCompletedToday();
+                case NOT_COMPLETED:
+                    return !habit.isCompletedToday();
+                default:
+                    return true;
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+    
+    // Порядок списка; null - порядок добавления, как в менеджере.
+    // Привычки без названия (из старых файлов) идут в начале.
+    private enum HabitOrder {
+        ADDED("Порядок добавления", null),
+        NAME("По названию", Comparator.comparing(Habit::getName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))),
+        STREAK("По текущей серии", Comparator.comparingInt((Habit habit) -> habit.getCurrentStreak()).reversed());
+        
+        private final String label;
+        private final Comparator<Habit> comparator;
+        
+        HabitOrder(String label, Comparator<Habit> comparator) {
+            this.label = label;
+            this.comparator = comparator;
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
     
     @Override
     public void start(Stage primaryStage) {
         habitManager = new HabitManager();
-        displayedHabits = FXCollections.observableArrayList();
+        // Поток сохранения фоновый: при завершении JVM без stop() (например, по сигналу)
+        // менеджер дописывает изменения здесь. Обработчик один на приложение.
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeManager, "habit-tracker-shutdown"));
+        habitManager.setErrorHandler(e -> Platform.runLater(() -> showError(e.getMessage())));
+        allHabits = FXCollections.observableArrayList();
+        filteredHabits = new FilteredList<>(allHabits);
+        displayedHabits = new SortedList<>(filteredHabits);
+        calendarHabits = FXCollections.observableArrayList();
         
         primaryStage.setTitle("Трекер привычек");
         
@@ -38,21 +117,73 @@ public class HabitTrackerApp extends Application {
         root.setLeft(leftPanel);
         
         // Центральная панель с календарем
-        ScrollPane calendarScroll = createCalendarPanel();
-        root.setCenter(calendarScroll);
+        BorderPane calendarPanel = createCalendarPanel();
+        root.setCenter(calendarPanel);
         
         // Верхняя панель с кнопками
         HBox topPanel = createTopPanel(primaryStage);
         root.setTop(topPanel);
         
         Scene scene = new Scene(root, 1200, 800);
+        scene.addPostLayoutPulseListener(this::calendarLaidOut);
         primaryStage.setScene(scene);
         primaryStage.show();
         
+        // Изменения привычек применяются к allHabits по одной; FilteredList и SortedList
+        // проверяют и переставляют только измененный элемент. Менеджер вызывает слушателей
+        // в том потоке, где сделано изменение, поэтому список меняется только в потоке JavaFX.
+        habitManager.addHabitListener(new HabitListener() {
+            @Override
+            public void habitAdded(Habit habit) {
+                onFxThread(() -> syncHabit(habit.getId(), true));
+            }
+            
+            @Override
+            public void habitRemoved(Habit habit) {
+                onFxThread(() -> syncHabit(habit.getId(), true));
+            }
+            
+            @Override
+            public void habitUpdated(Habit oldHabit, Habit newHabit) {
+                onFxThread(() -> syncHabit(newHabit.getId(), true));
+            }
+            
+            @Override
+            public void completionChanged(Habit habit, LocalDate date) {
+                onFxThread(() -> syncHabit(habit.getId(), false));
+            }
+            
+            @Override
+            public void habitsReloaded() {
+                onFxThread(HabitTrackerApp.this::refreshHabitList);
+            }
+        });
+        
         // Загружаем данные
         habitManager.loadHabits();
-        refreshHabitList();
         updateCalendar();
+        
+        // Метрики доступны через JMX, периодический отчет - по системным свойствам
+        habitManager.getMetrics().registerMBean();
+        habitManager.getMetrics().startReportingFromSystemProperties();
+        
+        // После полуночи отметки "сегодня" и календарь пересчитываются
+        habitManager.getDayClock().addRolloverListener(day -> Platform.runLater(() -> {
+            refreshHabitList();
+            updateCalendar();
+        }));
+        scheduleDayRollover();
+    }
+    
+    // Таймер до начала следующего дня: DayClock замечает смену дня и вызывает слушателей
+    private void scheduleDayRollover() {
+        PauseTransition rollover = new PauseTransition(
+            Duration.millis(habitManager.getDayClock().millisUntilNextDay() + 1000));
+        rollover.setOnFinished(e -> {
+            habitManager.getDayClock().today();
+            scheduleDayRollover();
+        });
+        rollover.play();
     }
     
     private VBox createLeftPanel() {
@@ -67,25 +198,83 @@ public class HabitTrackerApp extends Application {
         // Фильтр привычек (индивидуальное задание Щеглов)
         Label filterLabel = new Label("Фильтр по выполнению:");
         filterComboBox = new ComboBox<>();
-        filterComboBox.getItems().addAll("Все привычки", "Выполненные сегодня", "Невыполненные сегодня");
-        filterComboBox.setValue("Все привычки");
+        filterComboBox.getItems().addAll(CompletionFilter.values());
+        filterComboBox.setValue(CompletionFilter.ALL);
         filterComboBox.setOnAction(e -> applyFilter());
         
+        Label frequencyLabel = new Label("Частота:");
+        frequencyComboBox = new ComboBox<>();
+        frequencyComboBox.getItems().add(ALL_FREQUENCIES);
+        frequencyComboBox.setValue(ALL_FREQUENCIES);
+        frequencyComboBox.setOnAction(e -> applyFilter());
+        
+        Label nameLabel = new Label("Название содержит:");
+        nameFilterField = new TextField();
+        nameFilterField.textProperty().addListener((observable, oldValue, newValue) -> applyFilter());
+        
+        Label streakLabel = new Label("Текущая серия не меньше (дней):");
+        streakSpinner = new Spinner<>(0, 3650, 0);
+        streakSpinner.setEditable(true);
+        streakSpinner.valueProperty().addListener((observable, oldValue, newValue) -> applyFilter());
+        
+        Label orderLabel = new Label("Сортировка:");
+        orderComboBox = new ComboBox<>();
+        orderComboBox.getItems().addAll(HabitOrder.values());
+        orderComboBox.setValue(HabitOrder.ADDED);
+        orderComboBox.setOnAction(e -> displayedHabits.setComparator(orderComboBox.getValue().comparator));
+        
         habitListView = new ListView<>(displayedHabits);
         habitListView.setCellFactory(listView -> new HabitListCell());
         habitListView.setPrefHeight(400);
+        VBox.setVgrow(habitListView, Priority.ALWAYS);
         
-        leftPanel.getChildren().addAll(titleLabel, filterLabel, filterComboBox, habitListView);
+        leftPanel.getChildren().addAll(titleLabel, filterLabel, filterComboBox, frequencyLabel, frequencyComboBox,
+            nameLabel, nameFilterField, streakLabel, streakSpinner, orderLabel, orderComboBox, habitListView);
         return leftPanel;
     }
     
-    private ScrollPane createCalendarPanel() {
-        calendarContainer = new VBox(10);
-        calendarContainer.setPadding(new Insets(10));
-        
-        ScrollPane scrollPane = new ScrollPane(calendarContainer);
-        scrollPane.setFitToWidth(true);
-        return scrollPane;
+    // Календари в ListView: узлы создаются только для видимых привычек и переиспользуются
+    private BorderPane createCalendarPanel() {
+        calendarListView = new ListView<>(calendarHabits);
+        calendarListView.setPadding(new Insets(10));
+        calendarListView.setFocusTraversable(false);
+        
+        Label noHabitsLabel = new Label("Добавьте привычки для отображения календаря");
+        noHabitsLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: gray;");
+        calendarListView.setPlaceholder(noHabitsLabel);
+        
+        // Вид календаря: клетки-узлы или тепловая карта на Canvas
+        Label viewLabel = new Label("Вид календаря:");
+        calendarViewComboBox = new ComboBox<>();
+        calendarViewComboBox.getItems().addAll("Клетки (30 дней)", "Тепловая карта (30 дней)", "Тепловая карта (год)");
+        calendarViewComboBox.setValue("Клетки (30 дней)");
+        calendarViewComboBox.setOnAction(e -> applyCalendarView());
+        applyCalendarView();
+        
+        HBox viewBox = new HBox(10, viewLabel, calendarViewComboBox);
+        viewBox.setAlignment(Pos.CENTER_LEFT);
+        viewBox.setPadding(new Insets(10, 10, 0, 10));
+        
+        BorderPane calendarPanel = new BorderPane(calendarListView);
+        calendarPanel.setTop(viewBox);
+        return calendarPanel;
+    }
+    
+    private void applyCalendarView() {
+        switch (calendarViewComboBox.getValue()) {
+            case "Тепловая карта (30 дней)":
+                calendarListView.setCellFactory(listView ->
+                    new HabitHeatmapCell(habitManager, this::onCalendarDayClicked, 30, 20));
+                break;
+            case "Тепловая карта (год)":
+                calendarListView.setCellFactory(listView ->
+                    new HabitHeatmapCell(habitManager, this::onCalendarDayClicked, 365, 12));
+                break;
+            default:
+                calendarListView.setCellFactory(listView ->
+                    new HabitCalendarCell(habitManager, this::onCalendarDayClicked));
+                break;
+        }
     }
     
     private HBox createTopPanel(Stage primaryStage) {
@@ -109,38 +298,129 @@ public class HabitTrackerApp extends Application {
         return topPanel;
     }
     
+    // Новый предикат проверяет все привычки один раз; дальше FilteredList проверяет
+    // только измененные элементы. Поиск по названию обращается к индексу один раз на запрос.
     private void applyFilter() {
-        String selectedFilter = filterComboBox.getValue();
-        List<Habit> filteredHabits;
-        
-        switch (selectedFilter) {
-            case "Выполненные сегодня":
-                filteredHabits = habitManager.getHabits().stream()
-                    .filter(habit -> habit.isCompletedToday())
-                    .collect(Collectors.toList());
-                break;
-            case "Невыполненные сегодня":
-                filteredHabits = habitManager.getHabits().stream()
-                    .filter(habit -> !habit.isCompletedToday())
-                    .collect(Collectors.toList());
-                break;
-            default:
-                filteredHabits = habitManager.getHabits();
-                break;
+        String query = nameFilterField.getText() == null ? "" : nameFilterField.getText().trim();
+        if (query.isEmpty()) {
+            nameMatches = Collections.emptySet();
+        } else if (!query.equals(nameQuery) || nameIndex.isDirty()) {
+            if (nameIndex.isDirty()) {
+                nameIndex.rebuild(allHabits);
+            }
+            nameMatches = nameIndex.find(query);
         }
+        nameQuery = query;
         
-        displayedHabits.clear();
-        displayedHabits.addAll(filteredHabits);
+        List<Predicate<Habit>> conditions = new ArrayList<>();
+        CompletionFilter completion = filterComboBox.getValue();
+        if (completion != CompletionFilter.ALL) {
+            conditions.add(completion::matches);
+        }
+        String frequency = frequencyComboBox.getValue();
+        if (frequency != null && !ALL_FREQUENCIES.equals(frequency)) {
+            conditions.add(habit -> frequency.equals(habit.getFrequency()));
+        }
+        if (!query.isEmpty()) {
+            Set<Long> matches = nameMatches;
+            conditions.add(habit -> matches.contains(habit.getId()));
+        }
+        Integer streak = streakSpinner.getValue();
+        if (streak != null && streak > 0) {
+            conditions.add(habit -> habit.getCurrentStreak() >= streak);
+        }
+        
+        filteredHabits.setPredicate(conditions.stream().reduce(Predicate::and).orElse(null));
+    }
+    
+    // Название добавленной или измененной привычки: индекс устарел, но текущий результат
+    // поиска достаточно поправить для одной привычки, не перестраивая индекс
+    private void nameChanged(Habit habit) {
+        nameIndex.invalidate();
+        if (nameQuery.isEmpty()) {
+            return;
+        }
+        
+        nameMatches.remove(habit.getId());
+        // Привычка без названия ищется как пустое название, как в HabitNameIndex
+        String name = habit.getName();
+        if (name != null && name.toLowerCase(Locale.ROOT).contains(nameQuery.toLowerCase(Locale.ROOT))) {
+            nameMatches.add(habit.getId());
+        }
+    }
+    
+    private void addFrequency(String frequency) {
+        if (frequency != null && !frequencyComboBox.getItems().contains(frequency)) {
+            frequencyComboBox.getItems().add(frequency);
+        }
+    }
+    
+    // Привести элемент allHabits к тому, что сейчас в менеджере для привычки id: добавить,
+    // заменить или удалить. Событие из другого потока приходит с задержкой и может обогнать
+    // соседнее, поэтому объект берется из менеджера, а не из события.
+    // Замена элемента на себя пересчитывает фильтр и сортировку только для него.
+    private void syncHabit(long id, boolean detailsChanged) {
+        Habit current = habitManager.getHabitById(id);
+        long position = current != null ? habitManager.positionOf(current) : -1;
+        Long listed = listedPositions.get(id);
+        int index = listed != null ? sourceIndexOf(listed) : -1;
+        
+        if (position < 0) {
+            if (index >= 0) {
+                nameIndex.invalidate();
+                allHabits.remove(index);
+                listedPositions.remove(id);
+            }
+            return;
+        }
+        
+        if (detailsChanged) {
+            nameChanged(current);
+            addFrequency(current.getFrequency());
+        }
+        if (index >= 0) {
+            allHabits.set(index, current);
+        } else {
+            listedPositions.put(id, position);
+            allHabits.add(-sourceIndexOf(position) - 1, current);
+        }
+    }
+    
+    // Сразу, если вызвано из потока JavaFX, иначе в очередь этого потока
+    private static void onFxThread(Runnable action) {
+        if (Platform.isFxApplicationThread()) {
+            action.run();
+        } else {
+            Platform.runLater(action);
+        }
+    }
+    
+    // Двоичный поиск по позиции в менеджере: allHabits упорядочен так же.
+    // Возвращает индекс или -(точка вставки) - 1, как Collections.binarySearch.
+    private int sourceIndexOf(long position) {
+        int low = 0;
+        int high = allHabits.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middlePosition = listedPositions.get(allHabits.get(middle).getId());
+            if (middlePosition < position) {
+                low = middle + 1;
+            } else if (middlePosition > position) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
     }
     
     private void showAddHabitDialog(Stage parentStage) {
-        HabitDialog dialog = new HabitDialog(parentStage, "Добавить привычку", null);
+        HabitDialog dialog = new HabitDialog(parentStage, "Добавить привычку", null, habitManager.getDayClock());
         Optional<Habit> result = dialog.showAndWait();
         
         if (result.isPresent()) {
             habitManager.addHabit(result.get());
             habitManager.saveHabits();
-            refreshHabitList();
             updateCalendar();
         }
     }
@@ -152,13 +432,12 @@ public class HabitTrackerApp extends Application {
             return;
         }
         
-        HabitDialog dialog = new HabitDialog(parentStage, "Редактировать привычку", selectedHabit);
+        HabitDialog dialog = new HabitDialog(parentStage, "Редактировать привычку", selectedHabit, habitManager.getDayClock());
         Optional<Habit> result = dialog.showAndWait();
         
         if (result.isPresent()) {
             habitManager.updateHabit(selectedHabit, result.get());
             habitManager.saveHabits();
-            refreshHabitList();
             updateCalendar();
         }
     }
@@ -179,7 +458,6 @@ public class HabitTrackerApp extends Application {
         if (result.isPresent() && result.get() == ButtonType.OK) {
             habitManager.removeHabit(selectedHabit);
             habitManager.saveHabits();
-            refreshHabitList();
             updateCalendar();
         }
     }
@@ -189,98 +467,72 @@ public class HabitTrackerApp extends Application {
         statsWindow.show();
     }
     
+    // Полное обновление: после загрузки и смены дня
     private void refreshHabitList() {
-        displayedHabits.clear();
-        displayedHabits.addAll(habitManager.getHabits());
+        for (String frequency : habitManager.getHabitsByFrequency().keySet()) {
+            addFrequency(frequency);
+        }
+        nameIndex.invalidate();
+        List<Habit> habits = new ArrayList<>();
+        listedPositions.clear();
+        for (Habit habit : habitManager.getHabits()) {
+            long position = habitManager.positionOf(habit);
+            // Привычку могли удалить, пока собирали список
+            if (position >= 0) {
+                habits.add(habit);
+                listedPositions.put(habit.getId(), position);
+            }
+        }
+        allHabits.setAll(habits);
         applyFilter(); // Применяем текущий фильтр
     }
     
+    // Календарь показывает привычки, отображенные на момент обновления
     private void updateCalendar() {
-        calendarContainer.getChildren().clear();
-        
-        if (displayedHabits.isEmpty()) {
-            Label noHabitsLabel = new Label("Добавьте привычки для отображения календаря");
-            noHabitsLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: gray;");
-            calendarContainer.getChildren().add(noHabitsLabel);
-            return;
+        if (calendarUpdateStarted == 0) {
+            calendarUpdateStarted = System.nanoTime();
         }
-        
-        for (Habit habit : displayedHabits) {
-            VBox habitCalendar = createHabitCalendar(habit);
-            calendarContainer.getChildren().add(habitCalendar);
+        calendarHabits.setAll(displayedHabits);
+    }
+    
+    // После раскладки в импульсе: время обновления календаря считается вместе с построением
+    // ячеек, тогда же считаются узлы. В остальных импульсах ничего не делается.
+    private void calendarLaidOut() {
+        if (calendarUpdateStarted != 0) {
+            HabitMetrics metrics = habitManager.getMetrics();
+            metrics.calendarUpdate.record(System.nanoTime() - calendarUpdateStarted);
+            metrics.calendarNodes.set(SceneNodes.countNodes(calendarListView));
+            calendarUpdateStarted = 0;
         }
     }
     
-    private VBox createHabitCalendar(Habit habit) {
-        VBox habitBox = new VBox(10);
-        habitBox.setStyle("-fx-border-color: #cccccc; -fx-border-width: 1; -fx-padding: 10;");
-        
-        // Заголовок с названием привычки и процентом выполнения
-        HBox headerBox = new HBox(10);
-        headerBox.setAlignment(Pos.CENTER_LEFT);
-        
-        Label nameLabel = new Label(habit.getName());
-        nameLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
-        
-        Label percentLabel = new Label(String.format("%.1f%%", habit.getSuccessPercentage()));
-        percentLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #666;");
-        
-        headerBox.getChildren().addAll(nameLabel, percentLabel);
-        
-        // Календарь за последние 30 дней
-        GridPane calendar = new GridPane();
-        calendar.setHgap(2);
-        calendar.setVgap(2);
-        
-        LocalDate startDate = LocalDate.now().minusDays(29);
-        
-        for (int i = 0; i < 30; i++) {
-            LocalDate date = startDate.plusDays(i);
-            Rectangle dayRect = new Rectangle(20, 20);
-            
-            if (habit.isCompletedOnDate(date)) {
-                dayRect.setFill(Color.GREEN);
-            } else {
-                dayRect.setFill(Color.LIGHTGRAY);
-            }
-            
-            dayRect.setStroke(Color.BLACK);
-            dayRect.setStrokeWidth(0.5);
-            
-            // Подсказка с датой
-            Tooltip tooltip = new Tooltip(date.format(DateTimeFormatter.ofPattern("dd.MM.yyyy")));
-            Tooltip.install(dayRect, tooltip);
-            
-            // Обработчик клика для отметки выполнения
-            dayRect.setOnMouseClicked(e -> {
-                if (date.isAfter(LocalDate.now())) {
-                    showAlert("Нельзя отмечать будущие даты");
-                    return;
-                }
-                
-                if (habit.isCompletedOnDate(date)) {
-                    habit.unmarkCompleted(date);
-                    dayRect.setFill(Color.LIGHTGRAY);
-                } else {
-                    habit.markCompleted(date);
-                    dayRect.setFill(Color.GREEN);
-                }
-                
-                habitManager.saveHabits();
-                refreshHabitList();
-                
-                // Обновляем процент
-                percentLabel.setText(String.format("%.1f%%", habit.getSuccessPercentage()));
-            });
-            
-            calendar.add(dayRect, i % 10, i / 10);
+    private void onCalendarDayClicked(Habit habit, LocalDate date) {
+        if (date.isAfter(habitManager.getDayClock().today())) {
+            showAlert("Нельзя отмечать будущие даты");
+            return;
         }
         
-        Label calendarLabel = new Label("Календарь выполнения (последние 30 дней):");
-        calendarLabel.setStyle("-fx-font-size: 12px;");
+        if (habit.isCompletedOnDate(date)) {
+            habitManager.unmarkCompleted(habit, date);
+        } else {
+            habitManager.markCompleted(habit, date);
+        }
         
-        habitBox.getChildren().addAll(headerBox, calendarLabel, calendar);
-        return habitBox;
+        // Список обновляется по событию completionChanged, ячейка календаря перерисовывается сама
+        habitManager.saveHabits();
+    }
+    
+    @Override
+    public void stop() {
+        closeManager();
+    }
+    
+    // Вызывается из stop() и из обработчика завершения JVM; повторное закрытие ничего не делает
+    private void closeManager() {
+        if (habitManager != null) {
+            habitManager.getMetrics().close();
+            habitManager.close();
+        }
     }
     
     private void showAlert(String message) {
@@ -291,6 +543,14 @@ public class HabitTrackerApp extends Application {
         alert.showAndWait();
     }
     
+    private void showError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Ошибка");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.show();
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
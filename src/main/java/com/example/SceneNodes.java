@@ -0,0 +1,22 @@
+package com.example;
+
+import javafx.scene.Node;
+import javafx.scene.Parent;
+
+// Обход сцены JavaFX для метрик интерфейса. Отдельно от HabitMetrics,
+// чтобы модель и ее метрики не зависели от JavaFX.
+final class SceneNodes {
+    private SceneNodes() {
+    }
+
+    // Количество узлов в дереве сцены, например для календаря после обновления
+    static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+}
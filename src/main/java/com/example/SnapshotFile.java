@@ -0,0 +1,268 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Файл снимка с защитой от сбоев при записи.
+// Данные пишутся во временный файл рядом с целевым, сбрасываются на диск и атомарно
+// заменяют целевой файл; затем на диск сбрасывается и каталог, чтобы переименование
+// пережило сбой. В конце файла добавляется строка с длиной и CRC32 данных,
+// по которой при загрузке обнаруживается оборванный или поврежденный файл.
+// Файлы без этой строки (старый формат) читаются без проверки.
+class SnapshotFile {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int TRAILER_MAX_LENGTH = 128;
+    private static final String TRAILER_PREFIX = "\n#habits-checksum ";
+    private static final Pattern TRAILER_PATTERN =
+        Pattern.compile("\n#habits-checksum crc32=([0-9a-f]{8}) length=(\\d+)\n$");
+
+    interface BodyWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    interface BodyReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    interface MappedBodyReader<T> {
+        T read(ByteBuffer body) throws IOException;
+    }
+
+    // Содержимое файла не прошло проверку
+    static class CorruptedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CorruptedException(String message) {
+            super(message);
+        }
+
+        CorruptedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private SnapshotFile() {
+    }
+
+    // Возвращает размер записанного файла в байтах
+    static long write(Path target, BodyWriter body) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        long length;
+
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CountingOutputStream counter = new CountingOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            CheckedOutputStream checked = new CheckedOutputStream(counter, crc);
+            body.write(checked);
+            checked.flush();
+
+            String trailer = String.format("%scrc32=%08x length=%d\n", TRAILER_PREFIX, crc.getValue(), counter.count);
+            counter.write(trailer.getBytes(StandardCharsets.US_ASCII));
+            counter.flush();
+            channel.force(true);
+            length = counter.count;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(target);
+        return length;
+    }
+
+    // Сбросить на диск каталог файла file, чтобы созданные и переименованные в нем файлы
+    // не пропали при сбое. На Windows каталог нельзя открыть как файл, там NTFS сама
+    // сохраняет переименование в журнале файловой системы, и шаг пропускается.
+    static void syncDirectory(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory == null) {
+            return;
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    // Файл без строки контрольной суммы читается через legacyBody: его записала старая
+    // версия, возможно, в другой кодировке
+    static <T> T read(Path source, BodyReader<T> body, BodyReader<T> legacyBody) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            Matcher trailer = readTrailer(channel, fileSize);
+
+            long bodyLength = fileSize;
+            long expectedCrc = -1;
+            if (trailer != null) {
+                bodyLength = Long.parseLong(trailer.group(2));
+                expectedCrc = Long.parseLong(trailer.group(1), 16);
+                if (bodyLength + trailer.group().length() != fileSize) {
+                    throw new CorruptedException("Неверная длина файла " + source);
+                }
+            }
+
+            channel.position(0);
+            CRC32 crc = new CRC32();
+            InputStream in = new CheckedInputStream(
+                new LimitedInputStream(Channels.newInputStream(channel), bodyLength), crc);
+            InputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+
+            // Ошибка разбора не пробрасывается сразу: сначала проверяется контрольная сумма.
+            // JsonReader сообщает о поврежденном тексте через IOException, поэтому она
+            // тоже считается ошибкой разбора. Настоящая ошибка ввода-вывода повторится
+            // при дочитывании файла ниже и выйдет наружу как есть.
+            T result = null;
+            Exception parseError = null;
+            try {
+                result = trailer != null ? body.read(buffered) : legacyBody.read(buffered);
+            } catch (RuntimeException | IOException e) {
+                parseError = e;
+            }
+            while (buffered.skip(Long.MAX_VALUE) > 0) {
+                // Дочитываем остаток, чтобы контрольная сумма покрыла все данные
+            }
+
+            if (expectedCrc >= 0 && crc.getValue() != expectedCrc) {
+                throw new CorruptedException("Контрольная сумма не совпадает: " + source);
+            }
+            if (parseError != null) {
+                throw new CorruptedException("Не удалось прочитать " + source + ": " + parseError.getMessage(), parseError);
+            }
+            return result;
+        }
+    }
+
+    // Отобразить файл в память и проверить контрольную сумму без копирования в кучу.
+    // Сумма одна на весь файл, поэтому при проверке читаются все его страницы: ленивый
+    // разбор истории после этого экономит только время разбора, но не ввод-вывод.
+    static <T> T map(Path source, MappedBodyReader<T> body) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            Matcher trailer = readTrailer(channel, fileSize);
+            if (trailer == null) {
+                throw new CorruptedException("Нет контрольной суммы в файле " + source);
+            }
+
+            long bodyLength = Long.parseLong(trailer.group(2));
+            if (bodyLength + trailer.group().length() != fileSize) {
+                throw new CorruptedException("Неверная длина файла " + source);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, bodyLength);
+
+            CRC32 crc = new CRC32();
+            crc.update(mapped.duplicate());
+            if (crc.getValue() != Long.parseLong(trailer.group(1), 16)) {
+                throw new CorruptedException("Контрольная сумма не совпадает: " + source);
+            }
+        }
+
+        try {
+            return body.read(mapped);
+        } catch (RuntimeException e) {
+            throw new CorruptedException("Не удалось прочитать " + source + ": " + e, e);
+        }
+    }
+
+    private static Matcher readTrailer(FileChannel channel, long fileSize) throws IOException {
+        int tailLength = (int) Math.min(fileSize, TRAILER_MAX_LENGTH);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength);
+        long position = fileSize - tailLength;
+        while (tail.hasRemaining()) {
+            int read = channel.read(tail, position + tail.position());
+            if (read < 0) {
+                break;
+            }
+        }
+
+        Matcher matcher = TRAILER_PATTERN.matcher(new String(tail.array(), 0, tail.position(), StandardCharsets.ISO_8859_1));
+        return matcher.find() ? matcher : null;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Неизменяемый снимок статистики на день asOf: значения по каждой привычке и общие показатели.
+// Строится HabitManager.computeSnapshot() за один проход и не ссылается на живые привычки,
+// поэтому его можно отображать, не трогая данные менеджера.
+public final class StatisticsSnapshot {
+    private final LocalDate asOf;
+    private final List<HabitSummary> habits;
+    private final Map<Long, HabitSummary> habitsById;
+    private final Map<String, Integer> habitsByFrequency;
+    private final int completedTodayCount;
+    private final double overallSuccessRate;
+    private final int longestCurrentStreak;
+    private final HabitSummary bestPerformingHabit;
+    private final HabitSummary worstPerformingHabit;
+
+    StatisticsSnapshot(LocalDate asOf, List<HabitSummary> habits) {
+        this.asOf = asOf;
+        // Список передается во владение снимку и дальше не меняется, поэтому не копируется
+        this.habits = Collections.unmodifiableList(habits);
+
+        Map<Long, HabitSummary> byId = new HashMap<>();
+        Map<String, Integer> byFrequency = new HashMap<>();
+        int completed = 0;
+        double successSum = 0;
+        int longestStreak = 0;
+        HabitSummary best = null;
+        HabitSummary worst = null;
+
+        // При равном проценте лучшей и худшей считается первая по списку привычка
+        for (HabitSummary habit : habits) {
+            byId.put(habit.id, habit);
+            byFrequency.merge(habit.frequency, 1, Integer::sum);
+            if (habit.completedToday) {
+                completed++;
+            }
+            successSum += habit.successPercentage;
+            longestStreak = Math.max(longestStreak, habit.currentStreak);
+            if (best == null || habit.successPercentage > best.successPercentage) {
+                best = habit;
+            }
+            if (worst == null || habit.successPercentage < worst.successPercentage) {
+                worst = habit;
+            }
+        }
+
+        this.habitsById = byId;
+        this.habitsByFrequency = Collections.unmodifiableMap(byFrequency);
+        this.completedTodayCount = completed;
+        this.overallSuccessRate = habits.isEmpty() ? 0.0 : successSum / habits.size();
+        this.longestCurrentStreak = longestStreak;
+        this.bestPerformingHabit = best;
+        this.worstPerformingHabit = worst;
+    }
+
+    public LocalDate getAsOf() {
+        return asOf;
+    }
+
+    // Привычки в порядке списка менеджера
+    public List<HabitSummary> getHabits() {
+        return habits;
+    }
+
+    public HabitSummary getHabit(long id) {
+        return habitsById.get(id);
+    }
+
+    public int getTotalHabits() {
+        return habits.size();
+    }
+
+    public int getCompletedTodayCount() {
+        return completedTodayCount;
+    }
+
+    public double getOverallSuccessRate() {
+        return overallSuccessRate;
+    }
+
+    public int getLongestCurrentStreak() {
+        return longestCurrentStreak;
+    }
+
+    public HabitSummary getBestPerformingHabit() {
+        return bestPerformingHabit;
+    }
+
+    public HabitSummary getWorstPerformingHabit() {
+        return worstPerformingHabit;
+    }
+
+    public Map<String, Integer> getHabitsByFrequency() {
+        return habitsByFrequency;
+    }
+
+    // Значения одной привычки на день asOf
+    public static final class HabitSummary {
+        // Сколько последних дней, включая asOf, хранится для календаря
+        public static final int RECENT_DAYS = 64;
+
+        private final long id;
+        private final String name;
+        private final String description;
+        private final String frequency;
+        private final LocalDate createdDate;
+        private final LocalDate asOf;
+        private final boolean completedToday;
+        private final double successPercentage;
+        private final int currentStreak;
+        private final int maxStreak;
+        // Бит i - выполнена ли привычка за i дней до asOf
+        private final long recentDays;
+
+        HabitSummary(Habit habit, LocalDate asOf) {
+            this.id = habit.getId();
+            this.name = habit.getName();
+            this.description = habit.getDescription();
+            this.frequency = habit.getFrequency();
+            this.createdDate = habit.getCreatedDate();
+            this.asOf = asOf;
+
+            // Все значения снимаются с одного состояния привычки
+            synchronized (habit) {
+                this.completedToday = habit.isCompletedOnDate(asOf);
+                this.successPercentage = habit.getSuccessPercentage(Habit.DEFAULT_PERIOD_DAYS, asOf);
+                this.currentStreak = habit.getCurrentStreak(asOf);
+                this.maxStreak = habit.getMaxStreak();
+
+                long bits = 0;
+                for (int i = 0; i < RECENT_DAYS; i++) {
+                    if (habit.isCompletedOnDate(asOf.minusDays(i))) {
+                        bits |= 1L << i;
+                    }
+                }
+                this.recentDays = bits;
+            }
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getFrequency() {
+            return frequency;
+        }
+
+        public LocalDate getCreatedDate() {
+            return createdDate;
+        }
+
+        public LocalDate getAsOf() {
+            return asOf;
+        }
+
+        public boolean isCompletedToday() {
+            return completedToday;
+        }
+
+        public double getSuccessPercentage() {
+            return successPercentage;
+        }
+
+        public int getCurrentStreak() {
+            return currentStreak;
+        }
+
+        public int getMaxStreak() {
+            return maxStreak;
+        }
+
+        // Выполнение за один из последних RECENT_DAYS дней
+        public boolean isCompletedOn(LocalDate date) {
+            long daysBack = asOf.toEpochDay() - date.toEpochDay();
+            if (daysBack < 0 || daysBack >= RECENT_DAYS) {
+                throw new IllegalArgumentException("Дата вне периода снимка: " + date);
+            }
+            return (recentDays & (1L << daysBack)) != 0;
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package com.example;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -9,16 +16,83 @@ import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+// Окно открывается сразу с заглушками, статистика считается в фоновом потоке.
+// Детальная таблица заполняется частями по мере вычисления. Пока окно открыто,
+// изменения привычек запускают пересчет; до его окончания таблица показывает
+// прежний результат.
 public class StatisticsWindow extends Stage {
+    // Сколько привычек обрабатывается и добавляется в таблицу за один шаг
+    private static final int CHUNK_SIZE = 200;
+    private static final String PLACEHOLDER = "…";
+    private static final String COMPLETED_STYLE = "-fx-text-fill: green; -fx-font-weight: bold;";
+    private static final String NOT_COMPLETED_STYLE = "-fx-text-fill: red;";
+    
     private HabitManager habitManager;
     
+    private Label totalValue;
+    private Label completedTodayValue;
+    private Label overallSuccessValue;
+    private Label longestStreakValue;
+    private Label bestHabitValue;
+    private Label worstHabitValue;
+    private XYChart.Series<String, Number> frequencySeries;
+    private ObservableList<StatisticsSnapshot.HabitSummary> habitRows;
+    private SortedList<StatisticsSnapshot.HabitSummary> sortedHabitRows;
+    private TableView<StatisticsSnapshot.HabitSummary> habitsTable;
+    private Label detailedStatusLabel;
+    
+    private Task<StatisticsSnapshot> currentTask;
+    // Хотя бы один результат уже показан целиком
+    private boolean snapshotShown;
+    // Начало вычисления, результат которого показан, но еще не прошел раскладку (0 - такого нет)
+    private long shownComputationStarted;
+    // Несколько изменений подряд приводят к одному пересчету
+    private final PauseTransition refreshDelay = new PauseTransition(Duration.millis(300));
+    private boolean closed;
+    private final HabitListener refreshListener = new HabitListener() {
+        @Override
+        public void habitAdded(Habit habit) {
+            scheduleRefresh();
+        }
+        
+        @Override
+        public void habitRemoved(Habit habit) {
+            scheduleRefresh();
+        }
+        
+        @Override
+        public void habitUpdated(Habit oldHabit, Habit newHabit) {
+            scheduleRefresh();
+        }
+        
+        @Override
+        public void completionChanged(Habit habit, LocalDate date) {
+            scheduleRefresh();
+        }
+        
+        @Override
+        public void habitsReloaded() {
+            scheduleRefresh();
+        }
+    };
+    
     public StatisticsWindow(Stage parentStage, HabitManager habitManager) {
         this.habitManager = habitManager;
         
@@ -28,6 +102,19 @@ public class StatisticsWindow extends Stage {
         setHeight(600);
         
         createContent();
+        
+        refreshDelay.setOnFinished(e -> startComputation());
+        habitManager.addHabitListener(refreshListener);
+        setOnHidden(e -> {
+            closed = true;
+            habitManager.removeHabitListener(refreshListener);
+            refreshDelay.stop();
+            if (currentTask != null) {
+                currentTask.cancel();
+            }
+        });
+        
+        startComputation();
     }
     
     private void createContent() {
@@ -48,6 +135,7 @@ public class StatisticsWindow extends Stage {
         root.setCenter(scrollPane);
         
         Scene scene = new Scene(root);
+        scene.addPostLayoutPulseListener(this::snapshotLaidOut);
         setScene(scene);
     }
     
@@ -78,46 +166,30 @@ public class StatisticsWindow extends Stage {
         statsGrid.setHgap(30);
         statsGrid.setVgap(10);
         
-        // Вычисляем статистику
-        int totalHabits = habitManager.getTotalHabits();
-        int completedToday = habitManager.getCompletedTodayCount();
-        double overallSuccess = habitManager.getOverallSuccessRate();
-        int longestStreak = habitManager.getLongestCurrentStreak();
-        
-        Habit bestHabit = habitManager.getBestPerformingHabit();
-        Habit worstHabit = habitManager.getWorstPerformingHabit();
-        
-        // Добавляем статистику в сетку
-        addStatItem(statsGrid, 0, 0, "Всего привычек:", String.valueOf(totalHabits));
-        addStatItem(statsGrid, 0, 1, "Выполнено сегодня:", String.valueOf(completedToday));
-        addStatItem(statsGrid, 0, 2, "Общий процент успеха:", String.format("%.1f%%", overallSuccess));
-        addStatItem(statsGrid, 0, 3, "Самая длинная серия:", String.valueOf(longestStreak) + " дней");
-        
-        if (bestHabit != null) {
-            addStatItem(statsGrid, 1, 0, "Лучшая привычка:", 
-                bestHabit.getName() + " (" + String.format("%.1f%%", bestHabit.getSuccessPercentage()) + ")");
-        }
-        
-        if (worstHabit != null) {
-            addStatItem(statsGrid, 1, 1, "Требует внимания:", 
-                worstHabit.getName() + " (" + String.format("%.1f%%", worstHabit.getSuccessPercentage()) + ")");
-        }
+        // Значения заполняются, когда статистика будет вычислена
+        totalValue = addStatItem(statsGrid, 0, 0, "Всего привычек:");
+        completedTodayValue = addStatItem(statsGrid, 0, 1, "Выполнено сегодня:");
+        overallSuccessValue = addStatItem(statsGrid, 0, 2, "Общий процент успеха:");
+        longestStreakValue = addStatItem(statsGrid, 0, 3, "Самая длинная серия:");
+        bestHabitValue = addStatItem(statsGrid, 1, 0, "Лучшая привычка:");
+        worstHabitValue = addStatItem(statsGrid, 1, 1, "Требует внимания:");
         
         generalStats.getChildren().addAll(sectionTitle, statsGrid);
         return generalStats;
     }
     
-    private void addStatItem(GridPane grid, int col, int row, String label, String value) {
+    private Label addStatItem(GridPane grid, int col, int row, String label) {
         Label labelNode = new Label(label);
         labelNode.setStyle("-fx-font-weight: bold;");
         
-        Label valueNode = new Label(value);
+        Label valueNode = new Label(PLACEHOLDER);
         valueNode.setStyle("-fx-text-fill: #2c5282;");
         
         VBox itemBox = new VBox(5);
         itemBox.getChildren().addAll(labelNode, valueNode);
         
         grid.add(itemBox, col, row);
+        return valueNode;
     }
     
     private VBox createFrequencyChart() {
@@ -138,14 +210,8 @@ public class StatisticsWindow extends Stage {
         barChart.setLegendVisible(false);
         barChart.setPrefHeight(300);
         
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        
-        Map<String, Integer> frequencyMap = habitManager.getHabitsByFrequency();
-        for (Map.Entry<String, Integer> entry : frequencyMap.entrySet()) {
-            series.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
-        }
-        
-        barChart.getData().add(series);
+        frequencySeries = new XYChart.Series<>();
+        barChart.getData().add(frequencySeries);
         
         chartContainer.getChildren().addAll(chartTitle, barChart);
         return chartContainer;
@@ -158,68 +224,215 @@ public class StatisticsWindow extends Stage {
         Label sectionTitle = new Label("Детальная статистика по привычкам");
         sectionTitle.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
         
-        GridPane habitsGrid = new GridPane();
-        habitsGrid.setHgap(20);
-        habitsGrid.setVgap(15);
-        
-        // Заголовки таблицы
-        Label[] headers = {
-            new Label("Название"),
-            new Label("Частота"),
-            new Label("Успех (%)"),
-            new Label("Текущая серия"),
-            new Label("Макс. серия"),
-            new Label("Статус")
-        };
-        
-        for (int i = 0; i < headers.length; i++) {
-            headers[i].setStyle("-fx-font-weight: bold; -fx-background-color: #e2e8f0; -fx-padding: 8px;");
-            habitsGrid.add(headers[i], i, 0);
+        // Строки таблицы - готовые HabitSummary, ячейки создаются только для видимых строк.
+        // Сортировка сравнивает уже вычисленные поля и не пересчитывает привычки.
+        habitRows = FXCollections.observableArrayList();
+        sortedHabitRows = new SortedList<>(habitRows);
+        habitsTable = new TableView<>(sortedHabitRows);
+        habitsTable.setPrefHeight(400);
+        habitsTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        habitsTable.setPlaceholder(new Label("Нет данных для отображения"));
+        
+        habitsTable.getColumns().add(column("Название", StatisticsSnapshot.HabitSummary::getName,
+            Comparator.comparing(StatisticsSnapshot.HabitSummary::getName, Comparator.nullsFirst(Comparator.naturalOrder()))));
+        habitsTable.getColumns().add(column("Частота", StatisticsSnapshot.HabitSummary::getFrequency,
+            Comparator.comparing(StatisticsSnapshot.HabitSummary::getFrequency, Comparator.nullsFirst(Comparator.naturalOrder()))));
+        habitsTable.getColumns().add(column("Успех (%)", habit -> String.format("%.1f%%", habit.getSuccessPercentage()),
+            Comparator.comparingDouble(StatisticsSnapshot.HabitSummary::getSuccessPercentage)));
+        habitsTable.getColumns().add(column("Текущая серия", habit -> String.valueOf(habit.getCurrentStreak()),
+            Comparator.comparingInt(StatisticsSnapshot.HabitSummary::getCurrentStreak)));
+        habitsTable.getColumns().add(column("Макс. серия", habit -> String.valueOf(habit.getMaxStreak()),
+            Comparator.comparingInt(StatisticsSnapshot.HabitSummary::getMaxStreak)));
+        
+        TableColumn<StatisticsSnapshot.HabitSummary, StatisticsSnapshot.HabitSummary> statusColumn = column("Статус",
+            habit -> habit.isCompletedToday() ? "✓ Выполнено" : "○ Не выполнено",
+            Comparator.comparing(StatisticsSnapshot.HabitSummary::isCompletedToday));
+        statusColumn.setCellFactory(c -> new TableCell<>() {
+            @Override
+            protected void updateItem(StatisticsSnapshot.HabitSummary habit, boolean empty) {
+                super.updateItem(habit, empty);
+                if (empty || habit == null) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    setText(habit.isCompletedToday() ? "✓ Выполнено" : "○ Не выполнено");
+                    setStyle(habit.isCompletedToday() ? COMPLETED_STYLE : NOT_COMPLETED_STYLE);
+                }
+            }
+        });
+        habitsTable.getColumns().add(statusColumn);
+        
+        habitsTable.setSortPolicy(table -> {
+            sortedHabitRows.setComparator(sortComparator(table.getSortOrder()));
+            return true;
+        });
+        
+        detailedStatusLabel = new Label("Вычисление статистики…");
+        detailedStatusLabel.setStyle("-fx-text-fill: gray; -fx-font-style: italic; -fx-padding: 20px;");
+        
+        detailedStats.getChildren().addAll(sectionTitle, detailedStatusLabel, habitsTable);
+        return detailedStats;
+    }
+    
+    // Колонка, которая показывает строку целиком: текст берется из готовых полей строки,
+    // ключ сортировки хранится в userData колонки
+    private static TableColumn<StatisticsSnapshot.HabitSummary, StatisticsSnapshot.HabitSummary> column(
+            String title, Function<StatisticsSnapshot.HabitSummary, String> text,
+            Comparator<StatisticsSnapshot.HabitSummary> sortKey) {
+        TableColumn<StatisticsSnapshot.HabitSummary, StatisticsSnapshot.HabitSummary> column = new TableColumn<>(title);
+        column.setUserData(sortKey);
+        column.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue()));
+        column.setCellFactory(c -> new TableCell<>() {
+            @Override
+            protected void updateItem(StatisticsSnapshot.HabitSummary habit, boolean empty) {
+                super.updateItem(habit, empty);
+                setText(empty || habit == null ? null : text.apply(habit));
+            }
+        });
+        return column;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Comparator<StatisticsSnapshot.HabitSummary> sortComparator(
+            List<TableColumn<StatisticsSnapshot.HabitSummary, ?>> sortOrder) {
+        Comparator<StatisticsSnapshot.HabitSummary> comparator = null;
+        for (TableColumn<StatisticsSnapshot.HabitSummary, ?> column : sortOrder) {
+            Comparator<StatisticsSnapshot.HabitSummary> key = (Comparator<StatisticsSnapshot.HabitSummary>) column.getUserData();
+            if (column.getSortType() == TableColumn.SortType.DESCENDING) {
+                key = key.reversed();
+            }
+            comparator = comparator == null ? key : comparator.thenComparing(key);
+        }
+        return comparator;
+    }
+    
+    // Идет вычисление статистики, например для замера времени до заполнения окна
+    boolean isComputing() {
+        return currentTask != null && !currentTask.isDone();
+    }
+    
+    // Слушатели вызываются в потоке, где изменили привычку, а таймер пересчета работает
+    // только в потоке JavaFX. Изменение, пришедшее после закрытия окна, пропускается.
+    private void scheduleRefresh() {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(this::scheduleRefresh);
+            return;
+        }
+        if (!closed) {
+            refreshDelay.playFromStart();
+        }
+    }
+    
+    // Список привычек берется в потоке интерфейса, все вычисления - в фоновом потоке.
+    // Копировать привычки не нужно: значения каждой снимаются под ее монитором.
+    // Предыдущее незавершенное вычисление отменяется.
+    private void startComputation() {
+        if (currentTask != null) {
+            currentTask.cancel();
         }
         
-        // Данные по привычкам
-        int row = 1;
-        for (Habit habit : habitManager.getHabits()) {
-            Label nameLabel = new Label(habit.getName());
-            Label frequencyLabel = new Label(habit.getFrequency());
-            Label successLabel = new Label(String.format("%.1f%%", habit.getSuccessPercentage()));
-            Label currentStreakLabel = new Label(String.valueOf(habit.getCurrentStreak()));
-            Label maxStreakLabel = new Label(String.valueOf(habit.getMaxStreak()));
-            
-            Label statusLabel = new Label(habit.isCompletedToday() ? "✓ Выполнено" : "○ Не выполнено");
-            statusLabel.setStyle(habit.isCompletedToday() ? 
-                "-fx-text-fill: green; -fx-font-weight: bold;" : 
-                "-fx-text-fill: red;");
-            
-            // Стиль для строк
-            String rowStyle = "-fx-padding: 8px; -fx-background-color: " + 
-                (row % 2 == 0 ? "#f7fafc" : "white") + ";";
-            
-            nameLabel.setStyle(rowStyle);
-            frequencyLabel.setStyle(rowStyle);
-            successLabel.setStyle(rowStyle);
-            currentStreakLabel.setStyle(rowStyle);
-            maxStreakLabel.setStyle(rowStyle);
-            statusLabel.setStyle(statusLabel.getStyle() + rowStyle);
-            
-            habitsGrid.add(nameLabel, 0, row);
-            habitsGrid.add(frequencyLabel, 1, row);
-            habitsGrid.add(successLabel, 2, row);
-            habitsGrid.add(currentStreakLabel, 3, row);
-            habitsGrid.add(maxStreakLabel, 4, row);
-            habitsGrid.add(statusLabel, 5, row);
-            
-            row++;
+        long started = System.nanoTime();
+        LocalDate asOf = habitManager.getDayClock().today();
+        List<Habit> habits = habitManager.getHabits();
+        // Пока результата нет, таблица заполняется частями. При пересчете прежние строки
+        // остаются до конца вычисления и заменяются все сразу.
+        boolean progressive = !snapshotShown;
+        detailedStatusLabel.setText("Вычисление статистики…");
+        detailedStatusLabel.setVisible(true);
+        detailedStatusLabel.setManaged(true);
+        
+        Task<StatisticsSnapshot> task = new Task<>() {
+            @Override
+            protected StatisticsSnapshot call() {
+                List<StatisticsSnapshot.HabitSummary> summaries = new ArrayList<>(habits.size());
+                for (int from = 0; from < habits.size(); from += CHUNK_SIZE) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    List<StatisticsSnapshot.HabitSummary> chunk = habits.subList(from, Math.min(from + CHUNK_SIZE, habits.size()))
+                        .parallelStream()
+                        .map(habit -> new StatisticsSnapshot.HabitSummary(habit, asOf))
+                        .collect(Collectors.toList());
+                    summaries.addAll(chunk);
+                    
+                    boolean firstChunk = from == 0;
+                    int done = summaries.size();
+                    Platform.runLater(() -> {
+                        if (!isCancelled()) {
+                            if (progressive) {
+                                addHabitRows(chunk, firstChunk);
+                            }
+                            detailedStatusLabel.setText("Вычисление статистики… " + done + " из " + habits.size());
+                        }
+                    });
+                }
+                return new StatisticsSnapshot(asOf, summaries);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            shownComputationStarted = started;
+            if (!progressive) {
+                habitRows.setAll(task.getValue().getHabits());
+            }
+            showSnapshot(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            detailedStatusLabel.setText("Ошибка при вычислении статистики: " + task.getException().getMessage());
+            detailedStatusLabel.setVisible(true);
+            detailedStatusLabel.setManaged(true);
+        });
+        currentTask = task;
+        
+        Thread thread = new Thread(task, "habit-statistics");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void showSnapshot(StatisticsSnapshot snapshot) {
+        totalValue.setText(String.valueOf(snapshot.getTotalHabits()));
+        completedTodayValue.setText(String.valueOf(snapshot.getCompletedTodayCount()));
+        overallSuccessValue.setText(String.format("%.1f%%", snapshot.getOverallSuccessRate()));
+        longestStreakValue.setText(snapshot.getLongestCurrentStreak() + " дней");
+        bestHabitValue.setText(describe(snapshot.getBestPerformingHabit()));
+        worstHabitValue.setText(describe(snapshot.getWorstPerformingHabit()));
+        
+        List<XYChart.Data<String, Number>> frequencyData = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : snapshot.getHabitsByFrequency().entrySet()) {
+            frequencyData.add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
         }
+        frequencySeries.getData().setAll(frequencyData);
         
-        if (habitManager.getHabits().isEmpty()) {
-            Label noDataLabel = new Label("Нет данных для отображения");
-            noDataLabel.setStyle("-fx-text-fill: gray; -fx-font-style: italic; -fx-padding: 20px;");
-            detailedStats.getChildren().addAll(sectionTitle, noDataLabel);
+        if (snapshot.getHabits().isEmpty()) {
+            habitRows.clear();
+        }
+        detailedStatusLabel.setVisible(false);
+        detailedStatusLabel.setManaged(false);
+        snapshotShown = true;
+    }
+    
+    // Время от запуска вычисления до раскладки окна с результатом и количество узлов окна
+    private void snapshotLaidOut() {
+        if (shownComputationStarted != 0) {
+            HabitMetrics metrics = habitManager.getMetrics();
+            metrics.statisticsWindow.record(System.nanoTime() - shownComputationStarted);
+            metrics.statisticsWindowNodes.set(SceneNodes.countNodes(getScene().getRoot()));
+            shownComputationStarted = 0;
+        }
+    }
+    
+    private static String describe(StatisticsSnapshot.HabitSummary habit) {
+        if (habit == null) {
+            return "—";
+        }
+        return habit.getName() + " (" + String.format("%.1f%%", habit.getSuccessPercentage()) + ")";
+    }
+    
+    // Данные по привычкам. Первая часть нового вычисления заменяет строки предыдущего.
+    private void addHabitRows(List<StatisticsSnapshot.HabitSummary> habits, boolean replace) {
+        if (replace) {
+            habitRows.setAll(habits);
         } else {
-            detailedStats.getChildren().addAll(sectionTitle, habitsGrid);
+            habitRows.addAll(habits);
         }
-        
-        return detailedStats;
     }
-}
\ No newline at end of file
+}
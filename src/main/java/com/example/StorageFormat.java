@@ -0,0 +1,130 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Формат файла снимка. Выбирается системным свойством habits.storage.format (json или binary)
+// или через HabitManager.setStorageFormat().
+//
+// Двоичный снимок читается через отображение в память, которое живет, пока на него есть
+// ссылки (при ленивой загрузке - всю сессию). На Windows файл с открытым отображением
+// нельзя ни заменить, ни удалить, поэтому каждый новый двоичный снимок пишется в файл
+// следующего поколения habits.<n>.bin, а не поверх прежнего. Действующий снимок - файл
+// с наибольшим номером (habits.bin - поколение 0), старые удаляются, когда это удается.
+public enum StorageFormat {
+    JSON("habits.json", null),
+    BINARY("habits.bin", Pattern.compile("habits(?:\\.(\\d+))?\\.bin"));
+
+    public static final String PROPERTY = "habits.storage.format";
+    // Ленивая загрузка истории привычек из двоичного снимка (true или false)
+    public static final String LAZY_PROPERTY = "habits.storage.lazy";
+
+    private final String fileName;
+    // Имена файлов всех поколений; null - формат пишется всегда в один файл
+    private final Pattern generations;
+
+    StorageFormat(String fileName, Pattern generations) {
+        this.fileName = fileName;
+        this.generations = generations;
+    }
+
+    public Path getPath() {
+        return Paths.get(fileName);
+    }
+
+    // Файл снимка в каталоге данных directory
+    public Path getPath(Path directory) {
+        return directory.resolve(fileName);
+    }
+
+    // Действующий снимок в каталоге directory или null, если снимка нет
+    Path findSnapshot(Path directory) throws IOException {
+        if (generations == null) {
+            Path path = getPath(directory);
+            return Files.exists(path) ? path : null;
+        }
+        Path latest = null;
+        long latestGeneration = -1;
+        for (Path path : snapshotFiles(directory)) {
+            long generation = generationOf(path);
+            if (generation > latestGeneration) {
+                latest = path;
+                latestGeneration = generation;
+            }
+        }
+        return latest;
+    }
+
+    // Файл для следующего снимка: поколение после действующего
+    Path nextSnapshot(Path directory) throws IOException {
+        Path current = findSnapshot(directory);
+        if (generations == null || current == null) {
+            return getPath(directory);
+        }
+        return directory.resolve("habits." + (generationOf(current) + 1) + ".bin");
+    }
+
+    // Удалить снимки этого формата, кроме keep. Файл, который не удалось удалить
+    // (на Windows - пока он отображен в память), остается до следующей компактизации.
+    void deleteSnapshots(Path directory, Path keep) {
+        try {
+            for (Path path : snapshotFiles(directory)) {
+                if (!path.equals(keep)) {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        // Удалим в следующий раз
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Каталог недоступен: удалять нечего
+        }
+    }
+
+    private List<Path> snapshotFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (generations == null) {
+            Path path = getPath(directory);
+            if (Files.exists(path)) {
+                files.add(path);
+            }
+            return files;
+        }
+        if (!Files.isDirectory(directory.toAbsolutePath())) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toAbsolutePath(), "habits*.bin")) {
+            for (Path path : stream) {
+                if (generations.matcher(path.getFileName().toString()).matches()) {
+                    files.add(directory.resolve(path.getFileName()));
+                }
+            }
+        }
+        return files;
+    }
+
+    private long generationOf(Path path) {
+        Matcher matcher = generations.matcher(path.getFileName().toString());
+        if (!matcher.matches() || matcher.group(1) == null) {
+            return 0;
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    public StorageFormat other() {
+        return this == JSON ? BINARY : JSON;
+    }
+
+    public static StorageFormat fromSystemProperty() {
+        String value = System.getProperty(PROPERTY, "json");
+        return "binary".equalsIgnoreCase(value) ? BINARY : JSON;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+// История выполнения, которая лежит в отображенном в память двоичном снимке и еще не
+// разобрана. Вместе с ней хранится сводка, по которой можно ответить на частые вопросы
+// (максимальная серия, выполнено ли сегодня, текущая серия) без загрузки истории.
+class StoredHistory {
+    private final ByteBuffer block;
+    private final long createdDay;
+    final int count;
+    final int maxStreak;
+    final long lastRunStart;
+    final long lastRunEnd;
+
+    StoredHistory(ByteBuffer block, long createdDay, int count, int maxStreak, long lastRunStart, long lastRunEnd) {
+        this.block = block;
+        this.createdDay = createdDay;
+        this.count = count;
+        this.maxStreak = maxStreak;
+        this.lastRunStart = lastRunStart;
+        this.lastRunEnd = lastRunEnd;
+    }
+
+    // Закодированная история в том виде, в каком она лежит в файле
+    ByteBuffer block() {
+        return block.duplicate();
+    }
+
+    CompletionHistory load() {
+        try {
+            return HabitBinaryCodec.decodeHistory(block.duplicate(), createdDay);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+// Битовая история с деревом Фенвика против простого множества дней:
+// отметки в обе стороны от начала массива, подсчет за диапазон, серии и обход
+class CompletionHistoryTest {
+    private static final LocalDate ORIGIN = LocalDate.of(2024, 1, 1);
+    private static final long ORIGIN_DAY = ORIGIN.toEpochDay();
+
+    @Test
+    void randomChangesMatchSetOfDays() {
+        Random random = new Random(7);
+        CompletionHistory history = new CompletionHistory(ORIGIN);
+        NavigableSet<Long> days = new TreeSet<>();
+        for (int step = 0; step < 5000; step++) {
+            // Дни до начала истории заставляют массив расти назад
+            long day = ORIGIN_DAY - 200 + random.nextInt(700);
+            if (random.nextInt(3) == 0) {
+                assertEquals(days.remove(day), history.clear(LocalDate.ofEpochDay(day)));
+            } else {
+                assertEquals(days.add(day), history.set(day));
+            }
+            if (step % 50 == 0) {
+                assertMatches(days, history, random);
+            }
+        }
+        assertMatches(days, history, random);
+    }
+
+    @Test
+    void builtFromDaysMatchesIncremental() {
+        Random random = new Random(11);
+        CompletionHistory incremental = new CompletionHistory(ORIGIN);
+        NavigableSet<Long> days = new TreeSet<>();
+        long[] raw = new long[400];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = ORIGIN_DAY - 100 + random.nextInt(500);
+            days.add(raw[i]);
+            incremental.set(raw[i]);
+        }
+
+        CompletionHistory built = CompletionHistory.ofDays(ORIGIN_DAY, raw, raw.length);
+        assertMatches(days, built, random);
+        assertMatches(days, incremental, random);
+        assertEquals(0, (built.originDay() - incremental.originDay()) % 64);
+    }
+
+    @Test
+    void copyIsIndependent() {
+        CompletionHistory history = new CompletionHistory(ORIGIN);
+        history.set(ORIGIN_DAY);
+        history.set(ORIGIN_DAY + 1);
+
+        CompletionHistory copy = history.copy();
+        copy.set(ORIGIN_DAY + 2);
+        history.clear(ORIGIN);
+
+        assertEquals(1, history.cardinality());
+        assertEquals(3, copy.cardinality());
+        assertEquals(3, copy.longestRun());
+        assertEquals(1, history.longestRun());
+        assertEquals(3, copy.countRange(ORIGIN_DAY, ORIGIN_DAY + 2));
+    }
+
+    @Test
+    void rangesOutsideHistoryAreEmpty() {
+        CompletionHistory history = new CompletionHistory(ORIGIN);
+        history.set(ORIGIN_DAY + 5);
+
+        assertEquals(0, history.countRange(ORIGIN_DAY - 100, ORIGIN_DAY - 1));
+        assertEquals(0, history.countRange(ORIGIN_DAY + 6, ORIGIN_DAY + 1000));
+        assertEquals(1, history.countRange(Long.MIN_VALUE / 2, Long.MAX_VALUE / 2));
+        assertFalse(history.get(ORIGIN_DAY - 1));
+        assertFalse(history.clear(ORIGIN.minusDays(1)));
+        assertFalse(history.clear(ORIGIN.plusDays(10_000)));
+        assertEquals(CompletionHistory.NO_DAY, history.nextDay(ORIGIN_DAY + 6));
+        assertEquals(ORIGIN_DAY + 5, history.nextDay(ORIGIN_DAY - 100));
+    }
+
+    private static void assertMatches(NavigableSet<Long> days, CompletionHistory history, Random random) {
+        assertEquals(days.size(), history.cardinality());
+
+        List<Long> visited = new ArrayList<>();
+        history.forEachDay(visited::add);
+        assertEquals(new ArrayList<>(days), visited);
+
+        long first = ORIGIN_DAY - 300;
+        long last = ORIGIN_DAY + 600;
+        for (long day = first; day <= last; day++) {
+            assertEquals(days.contains(day), history.get(day), "День " + day);
+            assertEquals(runEndingAt(days, day), history.runEndingAt(day), "Серия до " + day);
+            Long next = days.ceiling(day);
+            assertEquals(next != null ? next : CompletionHistory.NO_DAY, history.nextDay(day), "Следующий после " + day);
+        }
+        for (int i = 0; i < 200; i++) {
+            long start = first + random.nextInt((int) (last - first));
+            long end = start + random.nextInt(300) - 20;
+            int expected = start <= end ? days.subSet(start, true, end, true).size() : 0;
+            assertEquals(expected, history.countRange(start, end), "Диапазон " + start + ".." + end);
+        }
+
+        assertEquals(longestRun(days), history.longestRun());
+        if (days.isEmpty()) {
+            assertEquals(Long.MIN_VALUE, history.lastRunEnd());
+        } else {
+            assertEquals(days.last(), history.lastRunEnd());
+            assertEquals(days.last() - runEndingAt(days, days.last()) + 1, history.lastRunStart());
+        }
+    }
+
+    private static int runEndingAt(NavigableSet<Long> days, long day) {
+        int length = 0;
+        while (days.contains(day - length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int longestRun(NavigableSet<Long> days) {
+        int longest = 0;
+        for (long day : days) {
+            if (!days.contains(day + 1)) {
+                longest = Math.max(longest, runEndingAt(days, day));
+            }
+        }
+        return longest;
+    }
+}
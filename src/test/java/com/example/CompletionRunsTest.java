@@ -0,0 +1,129 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+// Серии отмеченных дней: слияние при отметке, разбиение при снятии отметки,
+// самая длинная серия и построение из слов битового массива
+class CompletionRunsTest {
+    @Test
+    void markBetweenRunsMergesThem() {
+        CompletionRuns runs = new CompletionRuns();
+        add(runs, 1, 2, 3);
+        add(runs, 5, 6);
+        assertEquals(3, runs.longestRun());
+
+        runs.add(4);
+        assertEquals(6, runs.longestRun());
+        assertEquals(6, runs.runEndingAt(6));
+        assertEquals(1, runs.lastStart());
+        assertEquals(6, runs.lastEnd());
+    }
+
+    @Test
+    void markNextToRunExtendsIt() {
+        CompletionRuns runs = new CompletionRuns();
+        add(runs, 10, 11);
+        runs.add(9);
+        runs.add(12);
+        runs.add(11);
+
+        assertEquals(4, runs.longestRun());
+        assertEquals(9, runs.lastStart());
+        assertEquals(12, runs.lastEnd());
+    }
+
+    @Test
+    void unmarkSplitsRunAndShortensLongest() {
+        CompletionRuns runs = new CompletionRuns();
+        add(runs, 1, 2, 3, 4, 5, 6, 7);
+        add(runs, 20, 21, 22);
+
+        runs.remove(4);
+        assertEquals(3, runs.longestRun());
+        assertEquals(3, runs.runEndingAt(3));
+        assertEquals(0, runs.runEndingAt(4));
+        assertEquals(2, runs.runEndingAt(6));
+
+        runs.remove(20);
+        runs.remove(22);
+        assertEquals(3, runs.longestRun());
+        assertEquals(21, runs.lastStart());
+        assertEquals(21, runs.lastEnd());
+
+        runs.remove(21);
+        assertEquals(5, runs.lastStart());
+        assertEquals(7, runs.lastEnd());
+        // Снятие отметки вне серий ничего не меняет
+        runs.remove(100);
+        assertEquals(3, runs.longestRun());
+    }
+
+    @Test
+    void removingAllDaysLeavesNoRuns() {
+        CompletionRuns runs = new CompletionRuns();
+        add(runs, 3, 4);
+        runs.remove(3);
+        runs.remove(4);
+
+        assertEquals(0, runs.longestRun());
+        assertEquals(Long.MIN_VALUE, runs.lastStart());
+        assertEquals(Long.MIN_VALUE, runs.lastEnd());
+        assertEquals(0, runs.runEndingAt(4));
+    }
+
+    // Серии на границе слов: через границу, до последнего бита массива и во всем слове
+    @Test
+    void runsFromWordsCrossWordBoundaries() {
+        long origin = 1000;
+        long[] words = {
+            0b111L << 61,   // дни 61-63, продолжаются в следующем слове
+            0b11L | (1L << 10), // дни 64-65 и 74
+            -1L,            // все дни 128-191
+            1L << 63        // день 255: серия до конца массива
+        };
+        CompletionRuns runs = new CompletionRuns();
+        runs.fromWords(origin, words);
+
+        assertEquals(5, runs.runEndingAt(origin + 65));
+        assertEquals(1, runs.runEndingAt(origin + 74));
+        assertEquals(64, runs.runEndingAt(origin + 191));
+        assertEquals(0, runs.runEndingAt(origin + 192));
+        assertEquals(64, runs.longestRun());
+        assertEquals(origin + 255, runs.lastStart());
+        assertEquals(origin + 255, runs.lastEnd());
+
+        CompletionRuns incremental = new CompletionRuns();
+        for (int i = 0; i < words.length; i++) {
+            for (int bit = 0; bit < 64; bit++) {
+                if ((words[i] & (1L << bit)) != 0) {
+                    incremental.add(origin + i * 64L + bit);
+                }
+            }
+        }
+        for (long day = origin; day < origin + 256; day++) {
+            assertEquals(incremental.runEndingAt(day), runs.runEndingAt(day), "День " + day);
+        }
+        assertEquals(incremental.longestRun(), runs.longestRun());
+    }
+
+    @Test
+    void copyDoesNotShareRuns() {
+        CompletionRuns runs = new CompletionRuns();
+        add(runs, 1, 2, 3);
+        CompletionRuns copy = new CompletionRuns();
+        copy.copyFrom(runs);
+
+        runs.remove(2);
+        copy.add(4);
+        assertEquals(1, runs.longestRun());
+        assertEquals(4, copy.longestRun());
+    }
+
+    private static void add(CompletionRuns runs, long... days) {
+        for (long day : days) {
+            runs.add(day);
+        }
+    }
+}
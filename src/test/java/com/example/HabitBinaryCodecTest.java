@@ -0,0 +1,184 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Двоичный снимок: запись и чтение привычек с историей в обоих видах,
+// числа переменной длины и отказ от файлов чужого формата или другой версии
+class HabitBinaryCodecTest {
+    private static final LocalDate CREATED = LocalDate.of(2023, 1, 1);
+    private static final long CREATED_DAY = CREATED.toEpochDay();
+
+    @TempDir
+    Path dataDirectory;
+
+    private final HabitBinaryCodec codec = new HabitBinaryCodec();
+
+    @Test
+    void habitsReadBackEagerAndLazy() throws IOException {
+        List<Habit> habits = sampleHabits();
+        byte[] bytes = write(habits);
+
+        assertSameHabits(habits, codec.read(ByteBuffer.wrap(bytes)));
+
+        List<Habit> lazy = codec.read(ByteBuffer.wrap(bytes), true);
+        for (Habit habit : lazy) {
+            assertFalse(habit.isHistoryLoaded());
+        }
+        // Незагруженная история переносится в новый снимок без разбора
+        assertSameHabits(habits, codec.read(ByteBuffer.wrap(write(lazy))));
+        assertSameHabits(habits, lazy);
+    }
+
+    // Разности в несколько байт и первый день до даты создания (отрицательное смещение)
+    @Test
+    void varintsCoverMultiByteValues() throws IOException {
+        long[] gaps = {1, 127, 128, 16_383, 16_384, 2_097_152};
+        Set<LocalDate> dates = new HashSet<>();
+        long day = CREATED_DAY - 70;
+        dates.add(LocalDate.ofEpochDay(day));
+        for (long gap : gaps) {
+            day += gap;
+            dates.add(LocalDate.ofEpochDay(day));
+        }
+        Habit habit = new Habit("Редкая", "", "Ежемесячно", dates, CREATED);
+
+        Habit read = codec.read(ByteBuffer.wrap(write(List.of(habit)))).get(0);
+        assertEquals(dates, read.getCompletedDates());
+    }
+
+    // Вид с разностями: байт вида, количество дней, zigzag смещения первого дня, разности
+    @Test
+    void deltaBlockHasExpectedBytes() throws IOException {
+        Habit habit = new Habit("Привычка", "", "Ежедневно",
+            Set.of(CREATED.minusDays(1), CREATED.plusDays(127)), CREATED);
+
+        Habit lazy = codec.read(ByteBuffer.wrap(write(List.of(habit))), true).get(0);
+        ByteBuffer block = lazy.getColdHistory().block();
+        byte[] bytes = new byte[block.remaining()];
+        block.get(bytes);
+
+        assertArrayEquals(new byte[] {0, 2, 1, (byte) 0x80, 0x01}, bytes);
+    }
+
+    @Test
+    void overlongVarintIsCorruption() {
+        byte[] block = new byte[12];
+        for (int i = 1; i < block.length; i++) {
+            block[i] = (byte) 0x80;
+        }
+        assertThrows(SnapshotFile.CorruptedException.class,
+            () -> HabitBinaryCodec.decodeHistory(ByteBuffer.wrap(block), CREATED_DAY));
+    }
+
+    @Test
+    void unknownHistoryKindIsCorruption() {
+        assertThrows(SnapshotFile.CorruptedException.class,
+            () -> HabitBinaryCodec.decodeHistory(ByteBuffer.wrap(new byte[] {7, 0}), CREATED_DAY));
+    }
+
+    // Количество дней больше, чем байт в блоке
+    @Test
+    void impossibleDayCountIsCorruption() {
+        assertThrows(SnapshotFile.CorruptedException.class,
+            () -> HabitBinaryCodec.decodeHistory(ByteBuffer.wrap(new byte[] {0, 100, 0}), CREATED_DAY));
+    }
+
+    @Test
+    void wrongMagicIsCorruption() throws IOException {
+        byte[] bytes = write(sampleHabits());
+        bytes[0] = 'X';
+
+        assertThrows(SnapshotFile.CorruptedException.class, () -> codec.read(ByteBuffer.wrap(bytes)));
+        assertThrows(SnapshotFile.CorruptedException.class, () -> codec.read(ByteBuffer.wrap(new byte[4])));
+    }
+
+    @Test
+    void otherVersionIsCorruption() throws IOException {
+        byte[] bytes = write(sampleHabits());
+        ByteBuffer.wrap(bytes).putShort(4, (short) (HabitBinaryCodec.VERSION - 1));
+
+        SnapshotFile.CorruptedException e = assertThrows(SnapshotFile.CorruptedException.class,
+            () -> codec.read(ByteBuffer.wrap(bytes)));
+        assertTrue(e.getMessage().contains(String.valueOf(HabitBinaryCodec.VERSION - 1)), e.getMessage());
+    }
+
+    // Длина блока истории первой привычки сразу после ее сводки
+    @Test
+    void blockLongerThanFileIsCorruption() throws IOException {
+        Habit habit = new Habit(null, null, null, Set.of(), CREATED);
+        byte[] bytes = write(List.of(habit));
+        // magic, версия, количество, id, три строки null, дата, сводка
+        int blockLengthOffset = 4 + 2 + 4 + 8 + 3 * 4 + 8 + 4 + 4 + 8 + 8;
+        ByteBuffer.wrap(bytes).putInt(blockLengthOffset, bytes.length);
+
+        assertThrows(SnapshotFile.CorruptedException.class, () -> codec.read(ByteBuffer.wrap(bytes)));
+    }
+
+    // Оборванный файл без проверки контрольной суммы: ошибка разбора тоже считается повреждением
+    @Test
+    void truncatedBodyIsCorruptionThroughSnapshotFile() throws IOException {
+        byte[] bytes = write(sampleHabits());
+        Path file = dataDirectory.resolve("habits.1.bin");
+        SnapshotFile.write(file, out -> out.write(bytes, 0, bytes.length - 5));
+
+        assertThrows(SnapshotFile.CorruptedException.class,
+            () -> SnapshotFile.map(file, buffer -> codec.read(buffer)));
+    }
+
+    // Пустая история, редкая (разности), плотная (битовый массив) и привычка без строк
+    private static List<Habit> sampleHabits() {
+        List<Habit> habits = new ArrayList<>();
+        habits.add(new Habit("Пустая", "Без отметок", "Ежедневно", Set.of(), CREATED));
+
+        habits.add(new Habit("Редкая", "", "Еженедельно",
+            Set.of(CREATED.minusDays(3), CREATED.plusDays(10), CREATED.plusDays(400)), CREATED));
+
+        Set<LocalDate> dense = new HashSet<>();
+        for (int day = 0; day < 500; day++) {
+            if (day % 7 != 3) {
+                dense.add(CREATED.plusDays(day));
+            }
+        }
+        habits.add(new Habit("Плотная", "Почти каждый день", "Ежедневно", dense, CREATED));
+
+        habits.add(new Habit(null, null, null, Set.of(CREATED.plusDays(1), CREATED.plusDays(2)), CREATED));
+        return habits;
+    }
+
+    private byte[] write(List<Habit> habits) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(habits, out);
+        return out.toByteArray();
+    }
+
+    private static void assertSameHabits(List<Habit> expected, List<Habit> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Habit before = expected.get(i);
+            Habit after = actual.get(i);
+            assertEquals(before.getId(), after.getId());
+            assertEquals(before.getName(), after.getName());
+            assertEquals(before.getDescription(), after.getDescription());
+            assertEquals(before.getFrequency(), after.getFrequency());
+            assertEquals(before.getCreatedDate(), after.getCreatedDate());
+            assertEquals(before.getCompletedDates(), after.getCompletedDates());
+            assertEquals(before.getMaxStreak(), after.getMaxStreak());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Журнал изменений: оборванная при сбое строка отрезается перед дозаписью,
+// воспроизведение пропускает поврежденные строки и идет по отложенному и текущему журналам
+class HabitJournalTest {
+    @TempDir
+    Path dataDirectory;
+
+    @Test
+    void tornTailIsCutBeforeAppend() throws IOException {
+        Path path = dataDirectory.resolve("habits.journal");
+        String complete = "{\"op\":\"mark\",\"id\":1,\"date\":\"2024-06-01\"}\n"
+            + "{\"op\":\"mark\",\"id\":1,\"date\":\"2024-06-02\"}\n";
+        Files.write(path, (complete + "{\"op\":\"mark\",\"id\":1,\"da").getBytes(StandardCharsets.UTF_8));
+
+        HabitJournal journal = new HabitJournal(path);
+        journal.append(mark(1, "2024-06-03"));
+        journal.sync();
+        journal.close();
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2).contains("2024-06-03"));
+
+        List<HabitJournal.Record> records = new ArrayList<>();
+        assertEquals(0, new HabitJournal(path).replay(records::add));
+        assertEquals(List.of("2024-06-01", "2024-06-02", "2024-06-03"), dates(records));
+        assertEquals(Files.size(path), new HabitJournal(path).size());
+    }
+
+    // Без единого перевода строки весь файл - оборванная запись
+    @Test
+    void fileWithoutNewlineIsCutCompletely() throws IOException {
+        Path path = dataDirectory.resolve("habits.journal");
+        Files.write(path, "{\"op\":\"ma".getBytes(StandardCharsets.UTF_8));
+
+        HabitJournal journal = new HabitJournal(path);
+        journal.append(mark(2, "2024-06-03"));
+        journal.close();
+
+        List<HabitJournal.Record> records = new ArrayList<>();
+        assertEquals(0, new HabitJournal(path).replay(records::add));
+        assertEquals(List.of("2024-06-03"), dates(records));
+    }
+
+    @Test
+    void replaySkipsDamagedLines() throws IOException {
+        Path path = dataDirectory.resolve("habits.journal");
+        String text = "{\"op\":\"mark\",\"id\":1,\"date\":\"2024-06-01\"}\n"
+            + "не JSON\n"
+            + "\n"
+            + "{\"id\":1,\"date\":\"2024-06-02\"}\n"
+            + "{\"op\":\"unmark\",\"id\":1,\"date\":\"2024-06-01\"}\n"
+            + "{\"op\":\"mark\",\"id\":1,\"da";
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+
+        List<HabitJournal.Record> records = new ArrayList<>();
+        // Пустая строка не считается поврежденной, запись без op - считается
+        assertEquals(3, new HabitJournal(path).replay(records::add));
+        assertEquals(2, records.size());
+        assertEquals("mark", records.get(0).op);
+        assertEquals("unmark", records.get(1).op);
+    }
+
+    @Test
+    void rotatedJournalIsReplayedFirst() throws IOException {
+        Path path = dataDirectory.resolve("habits.journal");
+        Path rotated = dataDirectory.resolve("habits.journal.old");
+        HabitJournal journal = new HabitJournal(path);
+        journal.append(mark(1, "2024-06-01"));
+        journal.sync();
+        journal.rotate();
+        journal.append(mark(1, "2024-06-02"));
+        journal.sync();
+        // Компактизация не завершилась: следующий перенос дописывается к отложенному журналу
+        journal.rotate();
+        journal.append(mark(1, "2024-06-03"));
+        journal.sync();
+
+        assertTrue(Files.exists(rotated));
+        List<HabitJournal.Record> records = new ArrayList<>();
+        assertEquals(0, journal.replay(records::add));
+        assertEquals(List.of("2024-06-01", "2024-06-02", "2024-06-03"), dates(records));
+
+        journal.discardRotated();
+        assertFalse(Files.exists(rotated));
+        records.clear();
+        journal.replay(records::add);
+        assertEquals(List.of("2024-06-03"), dates(records));
+        journal.close();
+    }
+
+    // Оборванная строка отрезается и при переносе журнала, иначе она склеилась бы
+    // с записями следующего переноса в отложенном журнале
+    @Test
+    void tornTailIsCutBeforeRotate() throws IOException {
+        Path path = dataDirectory.resolve("habits.journal");
+        Files.write(path, ("{\"op\":\"mark\",\"id\":1,\"date\":\"2024-06-01\"}\n{\"op\":")
+            .getBytes(StandardCharsets.UTF_8));
+
+        HabitJournal journal = new HabitJournal(path);
+        journal.rotate();
+        journal.append(mark(1, "2024-06-02"));
+        journal.sync();
+        journal.rotate();
+        journal.close();
+
+        List<HabitJournal.Record> records = new ArrayList<>();
+        assertEquals(0, journal.replay(records::add));
+        assertEquals(List.of("2024-06-01", "2024-06-02"), dates(records));
+    }
+
+    private static HabitJournal.Record mark(long id, String date) {
+        HabitJournal.Record record = new HabitJournal.Record();
+        record.op = HabitJournal.OP_MARK;
+        record.id = id;
+        record.date = date;
+        return record;
+    }
+
+    private static List<String> dates(List<HabitJournal.Record> records) {
+        List<String> dates = new ArrayList<>();
+        for (HabitJournal.Record record : records) {
+            dates.add(record.date);
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Отметки из нескольких потоков одновременно с переименованием привычек через updateHabit
+// и компактизацией журнала: ни одна отметка не должна потеряться ни в памяти,
+// ни после перезапуска из снимка и журнала
+class HabitManagerConcurrencyTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 30);
+    private static final int HABITS = 16;
+    private static final int MARKING_THREADS = 8;
+    private static final int DAYS_PER_THREAD = 100;
+    private static final int UPDATES = 2000;
+    private static final int SAVE_EVERY_DAYS = 10;
+    private static final int ROUNDS = 2000;
+
+    @TempDir
+    Path dataDirectory;
+
+    @Test
+    void concurrentMarksAndUpdatesAreNotLost() throws Exception {
+        List<IOException> errors = new CopyOnWriteArrayList<>();
+        HabitManager manager = openManager(errors);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < HABITS; i++) {
+            Habit habit = new Habit("Привычка " + i, "", "Ежедневно", manager.getDayClock());
+            manager.addHabit(habit);
+            ids.add(habit.getId());
+        }
+
+        // Поток t отмечает дни t, t + 8, t + 16, ... и снимает отметку с каждого четвертого
+        // своего дня, поэтому итоговый набор дней каждой привычки известен заранее
+        Map<Long, String> lastNames = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch markingDone = new CountDownLatch(MARKING_THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(MARKING_THREADS + 2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < MARKING_THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < DAYS_PER_THREAD; i++) {
+                    LocalDate date = TODAY.minusDays(thread + (long) i * MARKING_THREADS);
+                    for (long id : ids) {
+                        manager.markCompleted(manager.getHabitById(id), date);
+                        if (i % 4 == 0) {
+                            manager.unmarkCompleted(manager.getHabitById(id), date);
+                        }
+                    }
+                    // Записи уходят в журнал, пока другой поток сворачивает его в снимок
+                    if (i % SAVE_EVERY_DAYS == 0) {
+                        manager.saveHabits();
+                    }
+                }
+                markingDone.countDown();
+                return null;
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            start.await();
+            Random random = new Random(1);
+            for (int i = 0; i < UPDATES; i++) {
+                long id = ids.get(random.nextInt(ids.size()));
+                String name = "Привычка " + id + "." + i;
+                // Имя одной привычки меняет только этот поток, поэтому последнее записанное имя - итоговое
+                manager.updateHabit(manager.getHabitById(id), new Habit(name, "", "Ежедневно"));
+                lastNames.put(id, name);
+            }
+            return null;
+        }));
+        futures.add(executor.submit(() -> {
+            start.await();
+            do {
+                manager.saveHabits();
+                manager.compact();
+            } while (!markingDone.await(1, TimeUnit.MILLISECONDS));
+            return null;
+        }));
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertHabits(manager, ids, lastNames);
+        manager.close();
+        assertTrue(errors.isEmpty(), () -> "Ошибки сохранения: " + errors);
+
+        // Журнал и снимок после перезапуска дают то же состояние
+        HabitManager reloaded = openManager(errors);
+        assertHabits(reloaded, ids, lastNames);
+        reloaded.close();
+        assertTrue(errors.isEmpty(), () -> "Ошибки загрузки: " + errors);
+    }
+
+    // Сводная статистика при замене привычек во время отметок: в ней остаются только
+    // привычки, которые сейчас в менеджере, а значения совпадают с подсчетом по списку
+    @Test
+    void statisticsFollowUpdatesDuringMarks() throws Exception {
+        List<IOException> errors = new CopyOnWriteArrayList<>();
+        HabitManager manager = openManager(errors);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < HABITS; i++) {
+            Habit habit = new Habit("Привычка " + i, "", "Ежедневно", manager.getDayClock());
+            manager.addHabit(habit);
+            ids.add(habit.getId());
+        }
+        // Статистика построена и дальше обновляется по событиям
+        manager.getBestPerformingHabit();
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch markingDone = new CountDownLatch(MARKING_THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(MARKING_THREADS + 2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < MARKING_THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                Random random = new Random(thread);
+                for (int i = 0; i < DAYS_PER_THREAD * HABITS; i++) {
+                    long id = ids.get(random.nextInt(ids.size()));
+                    LocalDate date = TODAY.minusDays(random.nextInt(3));
+                    if (random.nextBoolean()) {
+                        manager.markCompleted(manager.getHabitById(id), date);
+                    } else {
+                        manager.unmarkCompleted(manager.getHabitById(id), date);
+                    }
+                }
+                markingDone.countDown();
+                return null;
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            start.await();
+            Random random = new Random(-1);
+            for (int i = 0; i < UPDATES; i++) {
+                long id = ids.get(random.nextInt(ids.size()));
+                manager.updateHabit(manager.getHabitById(id), new Habit("Привычка " + id + "." + i, "", "Ежедневно"));
+            }
+            return null;
+        }));
+        futures.add(executor.submit(() -> {
+            start.await();
+            do {
+                manager.getBestPerformingHabit();
+                manager.getWorstPerformingHabit();
+            } while (!markingDone.await(0, TimeUnit.MILLISECONDS));
+            return null;
+        }));
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Habit best = manager.getBestPerformingHabit();
+        Habit worst = manager.getWorstPerformingHabit();
+        assertSame(manager.getHabitById(best.getId()), best);
+        assertSame(manager.getHabitById(worst.getId()), worst);
+
+        List<Habit> habits = manager.getHabits();
+        Habit expectedBest = habits.stream().max(Comparator.comparingDouble(Habit::getSuccessPercentage)).get();
+        Habit expectedWorst = habits.stream().min(Comparator.comparingDouble(Habit::getSuccessPercentage)).get();
+        assertSame(expectedBest, best);
+        assertSame(expectedWorst, worst);
+        assertEquals(habits.stream().filter(Habit::isCompletedToday).count(), manager.getCompletedTodayCount());
+        assertEquals(habits.stream().mapToDouble(Habit::getSuccessPercentage).average().orElse(0),
+            manager.getOverallSuccessRate(), 1e-9);
+        assertEquals(habits.stream().mapToInt(Habit::getCurrentStreak).max().orElse(0),
+            manager.getLongestCurrentStreak());
+
+        manager.close();
+        assertTrue(errors.isEmpty(), () -> "Ошибки сохранения: " + errors);
+    }
+
+    // Отметка и замена одной и той же привычки начинаются одновременно, пока другой поток
+    // читает сводку. Событие об отметке старой привычки не должно вернуть ее в сводку
+    // после замены.
+    @Test
+    void replacedHabitDoesNotReturnToStatistics() throws Exception {
+        List<IOException> errors = new CopyOnWriteArrayList<>();
+        HabitManager manager = openManager(errors);
+        Habit habit = new Habit("Привычка", "", "Ежедневно", manager.getDayClock());
+        manager.addHabit(habit);
+        long id = habit.getId();
+        manager.getBestPerformingHabit();
+
+        AtomicBoolean done = new AtomicBoolean();
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Future<?> reader = executor.submit(() -> {
+            while (!done.get()) {
+                manager.getBestPerformingHabit();
+            }
+            return null;
+        });
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                LocalDate date = TODAY.minusDays(round % 2);
+                Future<?> mark = executor.submit(() -> {
+                    barrier.await();
+                    manager.markCompleted(manager.getHabitById(id), date);
+                    return null;
+                });
+                int number = round;
+                Future<?> update = executor.submit(() -> {
+                    barrier.await();
+                    manager.updateHabit(manager.getHabitById(id), new Habit("Привычка " + number, "", "Ежедневно"));
+                    return null;
+                });
+                mark.get(10, TimeUnit.SECONDS);
+                update.get(10, TimeUnit.SECONDS);
+                assertSame(manager.getHabitById(id), manager.getBestPerformingHabit(), "Раунд " + round);
+                manager.unmarkCompleted(manager.getHabitById(id), date);
+            }
+        } finally {
+            done.set(true);
+            reader.get(10, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+
+        manager.close();
+        assertTrue(errors.isEmpty(), () -> "Ошибки сохранения: " + errors);
+    }
+
+    private HabitManager openManager(List<IOException> errors) {
+        HabitManager manager = new HabitManager(dataDirectory);
+        manager.setDayClock(DayClock.fixed(TODAY));
+        manager.setErrorHandler(errors::add);
+        manager.loadHabits();
+        return manager;
+    }
+
+    private static void assertHabits(HabitManager manager, List<Long> ids, Map<Long, String> lastNames) {
+        assertEquals(HABITS, manager.getTotalHabits());
+        int expectedDays = MARKING_THREADS * (DAYS_PER_THREAD - (DAYS_PER_THREAD + 3) / 4);
+        for (long id : ids) {
+            Habit habit = manager.getHabitById(id);
+            assertNotNull(habit, "Нет привычки " + id);
+            if (lastNames.containsKey(id)) {
+                assertEquals(lastNames.get(id), habit.getName());
+            }
+            assertEquals(expectedDays, habit.getCompletedDates().size(), "Дней у привычки " + id);
+            for (int day = 0; day < MARKING_THREADS * DAYS_PER_THREAD; day++) {
+                boolean expected = (day / MARKING_THREADS) % 4 != 0;
+                assertEquals(expected, habit.isCompletedOnDate(TODAY.minusDays(day)),
+                    "Привычка " + id + ", день " + TODAY.minusDays(day));
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Добавление привычек в менеджер и их сохранение
+class HabitManagerTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 30);
+
+    @TempDir
+    Path dataDirectory;
+
+    private final List<IOException> errors = new CopyOnWriteArrayList<>();
+
+    // Привычка, созданная до загрузки, может получить идентификатор привычки из файла:
+    // она добавляется под новым идентификатором и переживает перезапуск
+    @Test
+    void habitWithTakenIdGetsFreshId() {
+        HabitManager manager = openManager();
+        Habit loaded = new Habit("Зарядка", "", "Ежедневно", manager.getDayClock());
+        manager.addHabit(loaded);
+        manager.close();
+
+        manager = openManager();
+        Habit created = new Habit(loaded.getId(), "Чтение", "", "Ежедневно", TODAY, new CompletionHistory(TODAY));
+        manager.addHabit(created);
+        manager.markCompleted(created, TODAY);
+
+        assertNotEquals(loaded.getId(), created.getId());
+        assertEquals(2, manager.getTotalHabits());
+        assertEquals("Зарядка", manager.getHabitById(loaded.getId()).getName());
+        assertSame(created, manager.getHabitById(created.getId()));
+        manager.close();
+
+        manager = openManager();
+        assertEquals(2, manager.getTotalHabits());
+        assertEquals("Зарядка", manager.getHabitById(loaded.getId()).getName());
+        assertEquals("Чтение", manager.getHabitById(created.getId()).getName());
+        assertTrue(manager.getHabitById(created.getId()).isCompletedOnDate(TODAY));
+        manager.close();
+        assertTrue(errors.isEmpty(), () -> "Ошибки: " + errors);
+    }
+
+    @Test
+    void sameHabitIsAddedOnce() {
+        HabitManager manager = openManager();
+        Habit habit = new Habit("Зарядка", "", "Ежедневно", manager.getDayClock());
+        long id = habit.getId();
+        manager.addHabit(habit);
+        manager.addHabit(habit);
+
+        assertEquals(id, habit.getId());
+        assertEquals(1, manager.getTotalHabits());
+        manager.close();
+    }
+
+    // Импорт сразу пишет снимок, поэтому история загружается и без журнала
+    @Test
+    void importedHabitsSurviveRestart() throws IOException {
+        HabitManager manager = openManager();
+        Habit imported = new Habit("Зарядка", "", "Ежедневно", Set.of(TODAY, TODAY.minusDays(1)), TODAY.minusDays(5));
+        manager.importHabits(List.of(imported));
+        manager.close();
+        Files.deleteIfExists(dataDirectory.resolve("habits.journal"));
+
+        manager = openManager();
+        Habit loaded = manager.getHabitById(imported.getId());
+        assertEquals(2, loaded.getCompletedDates().size());
+        assertEquals(2, loaded.getCurrentStreak());
+        manager.close();
+        assertTrue(errors.isEmpty(), () -> "Ошибки: " + errors);
+    }
+
+    private HabitManager openManager() {
+        HabitManager manager = new HabitManager(dataDirectory);
+        manager.setDayClock(DayClock.fixed(TODAY));
+        manager.setErrorHandler(errors::add);
+        manager.loadHabits();
+        return manager;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Файл снимка с контрольной суммой и загрузка поврежденного снимка менеджером:
+// поврежденный файл откладывается в сторону и не затирается следующей компактизацией
+class SnapshotFileTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 30);
+
+    @TempDir
+    Path dataDirectory;
+
+    private final List<IOException> errors = new CopyOnWriteArrayList<>();
+
+    @Test
+    void damagedJsonWithTrailerIsQuarantined() throws Exception {
+        HabitManager manager = openManager();
+        manager.addHabit(new Habit("Зарядка", "", "Ежедневно", manager.getDayClock()));
+        manager.compact();
+        manager.close();
+
+        // Текст ломается так, что JsonReader падает раньше проверки контрольной суммы
+        Path snapshot = dataDirectory.resolve("habits.json");
+        String text = Files.readString(snapshot, StandardCharsets.UTF_8);
+        byte[] damaged = text.replaceFirst(":", ";").getBytes(StandardCharsets.UTF_8);
+        Files.write(snapshot, damaged);
+
+        assertLoadQuarantines(damaged);
+    }
+
+    @Test
+    void legacyFileThatFailsToParseIsQuarantined() throws Exception {
+        byte[] damaged = "[{\"name\": \"Зарядка\", \"completedDates\": [".getBytes(StandardCharsets.UTF_8);
+        Files.write(dataDirectory.resolve("habits.json"), damaged);
+
+        assertLoadQuarantines(damaged);
+    }
+
+    // Копия с тем же временем в имени уже есть: новая получает номер, старые не затираются
+    @Test
+    void quarantineDoesNotOverwriteEarlierCopy() throws Exception {
+        List<Path> earlier = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int second = 0; second < 3; second++) {
+            Path copy = dataDirectory.resolve("habits.json.corrupted-"
+                + now.plusSeconds(second).format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+            Files.write(copy, ("ранее " + second).getBytes(StandardCharsets.UTF_8));
+            earlier.add(copy);
+        }
+        byte[] damaged = "[{".getBytes(StandardCharsets.UTF_8);
+        Files.write(dataDirectory.resolve("habits.json"), damaged);
+
+        HabitManager manager = openManager();
+        manager.close();
+
+        List<Path> copies = quarantined();
+        assertEquals(4, copies.size());
+        for (int second = 0; second < 3; second++) {
+            assertEquals("ранее " + second, Files.readString(earlier.get(second), StandardCharsets.UTF_8));
+        }
+        copies.removeAll(earlier);
+        assertTrue(copies.get(0).getFileName().toString().endsWith("-1"), copies.get(0).toString());
+        assertArrayEquals(damaged, Files.readAllBytes(copies.get(0)));
+    }
+
+    @Test
+    void damagedBinarySnapshotIsQuarantined() throws Exception {
+        HabitManager manager = openManager();
+        manager.setStorageFormat(StorageFormat.BINARY);
+        manager.addHabit(new Habit("Зарядка", "", "Ежедневно", manager.getDayClock()));
+        manager.compact();
+        manager.close();
+
+        Path snapshot;
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            snapshot = files.filter(path -> path.getFileName().toString().endsWith(".bin")).findFirst().get();
+        }
+        byte[] damaged = Files.readAllBytes(snapshot);
+        damaged[damaged.length / 3] ^= 0x40;
+        Files.write(snapshot, damaged);
+        Files.deleteIfExists(dataDirectory.resolve("habits.journal"));
+
+        // Снимка JSON нет, поэтому читается двоичный
+        manager = openManager();
+        assertEquals(0, manager.getTotalHabits());
+        assertEquals(1, errors.size(), () -> "Ошибки: " + errors);
+        manager.close();
+
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            List<Path> copies = files.filter(path -> path.getFileName().toString()
+                .startsWith(snapshot.getFileName() + ".corrupted-")).collect(Collectors.toList());
+            assertEquals(1, copies.size());
+            assertArrayEquals(damaged, Files.readAllBytes(copies.get(0)));
+        }
+    }
+
+    @Test
+    void emptyLegacyFileLoadsAsEmpty() throws Exception {
+        Files.write(dataDirectory.resolve("habits.json"), new byte[0]);
+
+        HabitManager manager = openManager();
+        assertEquals(0, manager.getTotalHabits());
+        manager.close();
+        assertTrue(errors.isEmpty(), () -> "Ошибки: " + errors);
+        assertTrue(quarantined().isEmpty());
+    }
+
+    @Test
+    void writtenFileReadsBack() throws Exception {
+        Path file = dataDirectory.resolve("data");
+        long length = SnapshotFile.write(file, out -> out.write("тело".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(Files.size(file), length);
+        assertEquals("тело", SnapshotFile.read(file, SnapshotFileTest::readText, in -> "legacy"));
+        assertFalse(Files.exists(dataDirectory.resolve("data.tmp")));
+    }
+
+    @Test
+    void fileWithoutTrailerIsReadAsLegacy() throws Exception {
+        Path file = dataDirectory.resolve("data");
+        Files.write(file, "старый".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("legacy:старый", SnapshotFile.read(file, in -> "current", in -> "legacy:" + readText(in)));
+    }
+
+    @Test
+    void changedBodyFailsChecksum() throws Exception {
+        Path file = dataDirectory.resolve("data");
+        SnapshotFile.write(file, out -> out.write("abcdef".getBytes(StandardCharsets.US_ASCII)));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[2] = 'X';
+        Files.write(file, bytes);
+
+        assertThrows(SnapshotFile.CorruptedException.class,
+            () -> SnapshotFile.read(file, SnapshotFileTest::readText, SnapshotFileTest::readText));
+    }
+
+    @Test
+    void truncatedFileFailsLength() throws Exception {
+        Path file = dataDirectory.resolve("data");
+        SnapshotFile.write(file, out -> out.write("abcdef".getBytes(StandardCharsets.US_ASCII)));
+        byte[] bytes = Files.readAllBytes(file);
+        // Оборванное начало при целой строке контрольной суммы
+        byte[] truncated = new byte[bytes.length - 2];
+        System.arraycopy(bytes, 2, truncated, 0, truncated.length);
+        Files.write(file, truncated);
+
+        assertThrows(SnapshotFile.CorruptedException.class,
+            () -> SnapshotFile.read(file, SnapshotFileTest::readText, SnapshotFileTest::readText));
+    }
+
+    @Test
+    void parseErrorsBecomeCorruption() throws Exception {
+        Path file = dataDirectory.resolve("data");
+        SnapshotFile.write(file, out -> out.write("abcdef".getBytes(StandardCharsets.US_ASCII)));
+
+        assertThrows(SnapshotFile.CorruptedException.class,
+            () -> SnapshotFile.read(file, in -> { throw new IOException("разбор"); }, SnapshotFileTest::readText));
+        assertThrows(SnapshotFile.CorruptedException.class,
+            () -> SnapshotFile.read(file, in -> { throw new IllegalStateException("разбор"); }, SnapshotFileTest::readText));
+    }
+
+    // Загрузка откладывает файл с исходным содержимым, менеджер начинает с пустого
+    // списка, а новый снимок не трогает отложенную копию
+    private void assertLoadQuarantines(byte[] damaged) throws IOException {
+        HabitManager manager = openManager();
+        assertEquals(0, manager.getTotalHabits());
+        assertEquals(1, errors.size(), () -> "Ошибки: " + errors);
+
+        List<Path> copies = quarantined();
+        assertEquals(1, copies.size());
+        assertArrayEquals(damaged, Files.readAllBytes(copies.get(0)));
+
+        manager.addHabit(new Habit("Чтение", "", "Ежедневно", manager.getDayClock()));
+        manager.compact();
+        manager.close();
+        assertArrayEquals(damaged, Files.readAllBytes(copies.get(0)));
+        assertEquals(1, errors.size(), () -> "Ошибки: " + errors);
+    }
+
+    private List<Path> quarantined() throws IOException {
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("habits.json.corrupted-"))
+                .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private HabitManager openManager() {
+        HabitManager manager = new HabitManager(dataDirectory);
+        manager.setStorageFormat(StorageFormat.JSON);
+        manager.setDayClock(DayClock.fixed(TODAY));
+        manager.setErrorHandler(errors::add);
+        manager.loadHabits();
+        return manager;
+    }
+
+    private static String readText(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}